@@ -14,4 +14,6 @@ public @interface ConditionalOnEnvironment {
     String key();
 
     String[] havingValue() default {};
+
+    boolean matchIfMissing() default false;
 }
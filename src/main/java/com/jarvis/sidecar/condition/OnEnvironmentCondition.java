@@ -22,10 +22,13 @@ public class OnEnvironmentCondition implements Condition {
         if (CollectionUtils.isEmpty(keys) || CollectionUtils.isEmpty(values)) return false;
         String key = (String) keys.get(0);
         if (StringUtils.isEmpty(key)) return false;
+        String env = System.getenv(key);
+        List<Object> matchIfMissing = allAnnotationAttributes.get("matchIfMissing");
+        if (StringUtils.isEmpty(env))
+            return !CollectionUtils.isEmpty(matchIfMissing) && Boolean.TRUE.equals(matchIfMissing.get(0));
         String[] properties = (String[]) values.get(0);
         for (String value : properties) {
-            String env = System.getenv(key);
-            if (StringUtils.isNotEmpty(env) && env.equals(value))
+            if (env.equals(value))
                 return true;
         }
         return false;
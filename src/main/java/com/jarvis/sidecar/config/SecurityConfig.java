@@ -4,12 +4,13 @@ import com.jarvis.sidecar.filter.ServiceAccessFilter;
 import com.jarvis.sidecar.security.CustomAccessDeniedHandler;
 import com.jarvis.sidecar.security.CustomAuthenticationEntryPoint;
 import com.jarvis.sidecar.security.CustomAuthenticationManagerResolver;
+import com.jarvis.sidecar.security.CustomReactiveAuthorizationManager;
 import com.jarvis.sidecar.service.SecurityResourceService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
@@ -28,6 +29,9 @@ public class SecurityConfig {
     @Autowired
     private ServiceAccessFilter serviceAccessFilter;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${JWK_SET_URI:https://localhost:9443/oauth2/jwks}")
     private String jwkSetUri;
 
@@ -40,6 +44,9 @@ public class SecurityConfig {
     @Value("${CLIENT_SECRET:admin}")
     private String clientSecret;
 
+    @Value("${SECURITY_CONFIG_ADMIN_ROLE:}")
+    private String adminRole;
+
     @Bean
     public SecurityWebFilterChain securityFilterChain(ServerHttpSecurity http) {
         return http.csrf(ServerHttpSecurity.CsrfSpec::disable)
@@ -48,17 +55,11 @@ public class SecurityConfig {
                 .logout(ServerHttpSecurity.LogoutSpec::disable)
                 .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
                 .addFilterAfter(serviceAccessFilter, SecurityWebFiltersOrder.AUTHENTICATION)
-                .authorizeExchange(spec -> securityResource.applyAntPatterns(spec)
-                        .pathMatchers(HttpMethod.DELETE).denyAll()
-                        .pathMatchers(HttpMethod.PUT).denyAll()
-                        .pathMatchers(HttpMethod.PATCH).denyAll()
-                        .pathMatchers(HttpMethod.HEAD).denyAll()
-                        .pathMatchers(HttpMethod.TRACE).denyAll()
-                        .pathMatchers(ServiceAccessFilter.DEFAULT_EXCLUDE_ANT_PATH.toArray(new String[]{})).permitAll()
-                        .anyExchange().denyAll()
+                .authorizeExchange(spec -> spec.anyExchange()
+                        .access(new CustomReactiveAuthorizationManager(securityResource, adminRole))
                 ).oauth2ResourceServer(spec -> spec.accessDeniedHandler(new CustomAccessDeniedHandler())
                         .authenticationEntryPoint(new CustomAuthenticationEntryPoint())
-                        .authenticationManagerResolver(new CustomAuthenticationManagerResolver(jwkSetUri, introspectionUri, clientId, clientSecret)))
+                        .authenticationManagerResolver(new CustomAuthenticationManagerResolver(jwkSetUri, introspectionUri, clientId, clientSecret, meterRegistry)))
                 .requestCache(ServerHttpSecurity.RequestCacheSpec::disable).build();
     }
 
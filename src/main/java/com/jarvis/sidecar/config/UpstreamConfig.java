@@ -0,0 +1,71 @@
+package com.jarvis.sidecar.config;
+
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
+public class UpstreamConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamConfig.class);
+
+    public static final String UPSTREAM_POOL_NAME = "sidecar-upstream";
+
+    @Value("${UPSTREAM-MAX-CONNECTIONS:500}")
+    private int maxConnections;
+    @Value("${UPSTREAM-PENDING-ACQUIRE-MAX:1000}")
+    private int pendingAcquireMaxCount;
+    @Value("${UPSTREAM-PENDING-ACQUIRE-TIMEOUT:5000}")
+    private long pendingAcquireTimeout;
+    @Value("${UPSTREAM-MAX-IDLE-TIME:30000}")
+    private long maxIdleTime;
+    @Value("${UPSTREAM-MAX-LIFE-TIME:300000}")
+    private long maxLifeTime;
+    @Value("${UPSTREAM-EVICT-INTERVAL:30000}")
+    private long evictInterval;
+    @Value("${UPSTREAM-CONNECT-TIMEOUT:3000}")
+    private int connectTimeout;
+    @Value("${UPSTREAM-RESPONSE-TIMEOUT:60000}")
+    private long responseTimeout;
+    @Value("${UPSTREAM-TCP-NODELAY:true}")
+    private boolean tcpNoDelay;
+    @Value("${UPSTREAM-KEEP-ALIVE:true}")
+    private boolean keepAlive;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider upstreamConnectionProvider() {
+        LOG.info("upstream connection pool '{}' max connections {}, pending acquire max {}, max idle {}ms, max life {}ms",
+                UPSTREAM_POOL_NAME, maxConnections, pendingAcquireMaxCount, maxIdleTime, maxLifeTime);
+        return ConnectionProvider.builder(UPSTREAM_POOL_NAME)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeout))
+                .maxIdleTime(Duration.ofMillis(maxIdleTime))
+                .maxLifeTime(Duration.ofMillis(maxLifeTime))
+                .evictInBackground(Duration.ofMillis(evictInterval))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient upstreamWebClient(ConnectionProvider upstreamConnectionProvider) {
+        LOG.info("upstream connect timeout {}ms, response timeout {}ms, tcp no delay {}, keep alive {}",
+                connectTimeout, responseTimeout, tcpNoDelay, keepAlive);
+        HttpClient httpClient = HttpClient.create(upstreamConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .option(ChannelOption.TCP_NODELAY, tcpNoDelay)
+                .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .responseTimeout(Duration.ofMillis(responseTimeout))
+                .keepAlive(keepAlive);
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+}
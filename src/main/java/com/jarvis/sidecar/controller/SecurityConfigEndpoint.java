@@ -0,0 +1,41 @@
+package com.jarvis.sidecar.controller;
+
+import com.jarvis.sidecar.service.SecurityResourceService;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@WebEndpoint(id = "securityconfig")
+public class SecurityConfigEndpoint {
+
+    private final SecurityResourceService securityResource;
+
+    public SecurityConfigEndpoint(SecurityResourceService securityResource) {
+        this.securityResource = securityResource;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return securityResource.getStatus();
+    }
+
+    @WriteOperation
+    public Mono<WebEndpointResponse<Map<String, Object>>> reload() {
+        return Mono.fromCallable(securityResource::reload)
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(WebEndpointResponse::new)
+                .onErrorResume(ex -> {
+                    Map<String, Object> body = new LinkedHashMap<>(securityResource.getStatus());
+                    body.put("error", ex.getMessage());
+                    return Mono.just(new WebEndpointResponse<>(body, WebEndpointResponse.STATUS_BAD_REQUEST));
+                });
+    }
+}
@@ -0,0 +1,22 @@
+package com.jarvis.sidecar.controller;
+
+import com.jarvis.sidecar.condition.ConditionalOnEnvironment;
+import com.jarvis.sidecar.service.ProxyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+@RestController
+@ConditionalOnEnvironment(key = "PROXY_MODE", havingValue = "streaming")
+public class StreamingProxyController {
+
+    @Autowired
+    private ProxyService service;
+
+    @RequestMapping("/**")
+    public Mono<Void> proxy(ServerWebExchange exchange) {
+        return service.stream(exchange);
+    }
+}
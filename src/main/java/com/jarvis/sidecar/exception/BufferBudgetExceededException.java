@@ -0,0 +1,25 @@
+package com.jarvis.sidecar.exception;
+
+public class BufferBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = -5114803368734922176L;
+
+    public BufferBudgetExceededException() {
+    }
+
+    public BufferBudgetExceededException(String message) {
+        super(message);
+    }
+
+    public BufferBudgetExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public BufferBudgetExceededException(Throwable cause) {
+        super(cause);
+    }
+
+    public BufferBudgetExceededException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,25 @@
+package com.jarvis.sidecar.exception;
+
+public class ConcurrencyLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = 4731250815947207761L;
+
+    public ConcurrencyLimitException() {
+    }
+
+    public ConcurrencyLimitException(String message) {
+        super(message);
+    }
+
+    public ConcurrencyLimitException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ConcurrencyLimitException(Throwable cause) {
+        super(cause);
+    }
+
+    public ConcurrencyLimitException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,25 @@
+package com.jarvis.sidecar.exception;
+
+public class QuotaExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = -2270431968255418853L;
+
+    public QuotaExceededException() {
+    }
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+
+    public QuotaExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public QuotaExceededException(Throwable cause) {
+        super(cause);
+    }
+
+    public QuotaExceededException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
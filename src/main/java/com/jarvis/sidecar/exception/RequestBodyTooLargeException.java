@@ -0,0 +1,13 @@
+package com.jarvis.sidecar.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class RequestBodyTooLargeException extends ResponseStatusException {
+
+    private static final long serialVersionUID = 3349286151806741235L;
+
+    public RequestBodyTooLargeException(String reason) {
+        super(HttpStatus.PAYLOAD_TOO_LARGE, reason);
+    }
+}
@@ -0,0 +1,86 @@
+package com.jarvis.sidecar.filter;
+
+import com.jarvis.sidecar.exception.RequestBodyTooLargeException;
+import com.jarvis.sidecar.util.ContextUtil;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class BodyLimitFilter implements WebFilter, Ordered {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BodyLimitFilter.class);
+
+    private final long maxBodySize;
+
+    public BodyLimitFilter(@Value("${MAX-REQUEST-BODY-SIZE:0}") long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+        LOGGER.info("max request body size {}", maxBodySize > 0 ? maxBodySize : "unlimited");
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (maxBodySize <= 0) return chain.filter(exchange);
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        long length = headers.getContentLength();
+        if (length > maxBodySize)
+            return tooLarge(exchange.getResponse(), exchange.getRequest().getPath().value());
+        // the server reads no more than a declared content length, a chunked or http/2 body needs counting
+        if (length >= 0) return chain.filter(exchange);
+        ServerHttpRequest request = new ServerHttpRequestDecorator(exchange.getRequest()) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return Flux.defer(() -> {
+                    AtomicLong count = new AtomicLong();
+                    return super.getBody().handle((buffer, sink) -> {
+                        if (count.addAndGet(buffer.readableByteCount()) <= maxBodySize) {
+                            sink.next(buffer);
+                            return;
+                        }
+                        DataBufferUtils.release(buffer);
+                        sink.error(new RequestBodyTooLargeException("request body exceeds " + maxBodySize + " bytes"));
+                    });
+                });
+            }
+        };
+        return chain.filter(exchange.mutate().request(request).build());
+    }
+
+    private Mono<Void> tooLarge(ServerHttpResponse response, String path) {
+        LOGGER.warn("request body of '{}' exceeds {} bytes", path, maxBodySize);
+        JSONObject body = new JSONObject();
+        body.put("result", false);
+        body.put("result_code", String.valueOf(HttpStatus.PAYLOAD_TOO_LARGE.value()));
+        body.put("result_message", "request body exceeds " + maxBodySize + " bytes");
+        body.put("trace_id", ContextUtil.getTraceId());
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        response.setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setContentLength(bytes.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(bytes)));
+    }
+}
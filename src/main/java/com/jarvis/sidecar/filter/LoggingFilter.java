@@ -1,19 +1,27 @@
 package com.jarvis.sidecar.filter;
 
 import com.jarvis.sidecar.condition.ConditionalOnEnvironment;
+import com.jarvis.sidecar.model.AccessLogRecord;
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.model.SecurityEntity;
 import com.jarvis.sidecar.model.ServerContext;
 import com.jarvis.sidecar.server.AceServerWebExchangeDecorator;
+import com.jarvis.sidecar.server.BodyCapture;
+import com.jarvis.sidecar.server.MultipartCapture;
+import com.jarvis.sidecar.service.AccessLogService;
+import com.jarvis.sidecar.service.BufferBudget;
+import com.jarvis.sidecar.service.RouteIndex;
+import com.jarvis.sidecar.service.SecurityResourceService;
 import com.jarvis.sidecar.util.ContextUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
-import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerCodecConfigurer;
-import org.springframework.http.codec.multipart.FilePart;
-import org.springframework.http.codec.multipart.FormFieldPart;
-import org.springframework.http.codec.multipart.Part;
 import org.springframework.stereotype.Component;
 import org.springframework.util.*;
 import org.springframework.web.server.ServerWebExchange;
@@ -27,22 +35,15 @@ import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 @ConditionalOnEnvironment(key = "ENABLE_LOG", havingValue = "true")
 public class LoggingFilter implements WebFilter, Ordered {
 
     private static final String PARAM_FORMAT = "%s=%s&";
-    private static final String[] DEFAULT_EXCLUDE_ANT_PATH_MATCH = {
-            "/swagger-ui.html", "/v2/api-docs/**", "/swagger/**",
-            "/webjars/**", "/v3/api-docs/**", "/swagger-resources/**",
-            "/configuration/security/**", "/swagger-ui/index.html",
-            "/configuration/ui/**", "/swagger-ui/**",
-            "/css/**", "/oauth/check_token", "/identity/oauth/check_token",
-            "/js/**", "/favicon.ico", "/actuator/**",
-            "/api-docs/service/**", "/image/**", "/scss/**", "/actuator/**", "/"
-    };
 
     public static final String REQUEST_QUERY_PARAM_ATTR = "com.wingbank.sidecar.filter.requestQueryParam";
     public static final String REQUEST_QUERY_PARAM_ENCODE_ATTR = "com.wingbank.sidecar.filter.requestQueryParamEncode";
@@ -54,10 +55,63 @@ public class LoggingFilter implements WebFilter, Ordered {
     @Autowired
     private ServerCodecConfigurer configurer;
 
-    private static final PathMatcher MATCHER = new AntPathMatcher();
+    @Autowired
+    private SecurityResourceService securityResource;
+
+    @Autowired
+    private AccessLogService accessLog;
+
+    @Autowired
+    private BufferBudget budget;
+
+    private final Map<MediaType, Integer> bodyLimits = new LinkedHashMap<>();
+    private final int defaultBodyLimit;
+    private final int responseBodyLimit;
+    private final int multipartFieldLimit;
+    private final boolean tail;
+    private final double sampleRate;
+    private final Map<String, Double> sampleRouteRates = new HashMap<>();
+    private final RouteIndex sampleRoutes;
+    private final long slowThresholdNanos;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LoggingFilter.class);
 
+    public LoggingFilter(@Value("${LOG_BODY_LIMITS:application/json=65536,application/x-www-form-urlencoded=16384}") String limits,
+                         @Value("${LOG_BODY_DEFAULT_LIMIT:0}") int defaultLimit,
+                         @Value("${LOG_RESPONSE_BODY_LIMIT:65536}") int responseLimit,
+                         @Value("${LOG_MULTIPART_FIELD_LIMIT:1024}") int multipartFieldLimit,
+                         @Value("${LOG_MODE:all}") String mode,
+                         @Value("${LOG_SAMPLE_RATE:1}") double sampleRate,
+                         @Value("${LOG_SAMPLE_ROUTES:}") String sampleRoutes,
+                         @Value("${LOG_SLOW_THRESHOLD:1000}") long slowThreshold) {
+        for (String limit : StringUtils.commaDelimitedListToSet(limits)) {
+            int index = limit.lastIndexOf('=');
+            Assert.isTrue(index > 0, "Log body limit must be <content type>=<bytes>, " + limit);
+            bodyLimits.put(MediaType.parseMediaType(limit.substring(0, index).trim()), Integer.parseInt(limit.substring(index + 1).trim()));
+        }
+        this.defaultBodyLimit = defaultLimit;
+        this.responseBodyLimit = responseLimit;
+        this.multipartFieldLimit = multipartFieldLimit;
+        this.tail = "tail".equalsIgnoreCase(mode);
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThreshold);
+        List<SecurityEntity> routes = new ArrayList<>();
+        for (String route : StringUtils.commaDelimitedListToSet(sampleRoutes)) {
+            int index = route.lastIndexOf('=');
+            Assert.isTrue(index > 0, "Log sample route must be <ant path>=<rate>, " + route);
+            SecurityEntity entity = new SecurityEntity();
+            entity.setId(route.substring(0, index).trim());
+            entity.setEndpoints(Set.of(entity.getId()));
+            routes.add(entity);
+            sampleRouteRates.put(entity.getId(), Double.parseDouble(route.substring(index + 1).trim()));
+        }
+        this.sampleRoutes = routes.isEmpty() ? null : new RouteIndex(routes);
+        LOGGER.info("log body limits {}, default {}, response {}, multipart field {}", bodyLimits, defaultLimit, responseLimit,
+                multipartFieldLimit);
+        LOGGER.info("log mode {}, sample rate {}, route rates {}{}", tail ? "tail" : "all", sampleRate, sampleRouteRates,
+                tail ? ", slow threshold " + slowThreshold + "ms" : "");
+    }
+
     @Override
     public int getOrder() {
         return Ordered.HIGHEST_PRECEDENCE + 1;
@@ -65,74 +119,117 @@ public class LoggingFilter implements WebFilter, Ordered {
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String traceId = ContextUtil.getTraceId();
+        exchange.getResponse().getHeaders().set("trace-id", traceId);
+        if (securityResource.describe(exchange).isLogExcluded() || !sample(exchange.getRequest().getPath().value()))
+            return chain.filter(buildQueryParamURI(exchange, getQueryParam(exchange))).doFinally(signal -> {
+                if (SignalType.CANCEL.equals(signal))
+                    LOGGER.warn("client {} request '{}'", signal, exchange.getRequest().getPath().value());
+            });
+        long start = System.nanoTime();
         ServerContext context = new ServerContext(exchange);
-        context.setTraceId(ContextUtil.getTraceId());
-        context.setShouldLog(shouldLog(exchange));
+        context.setTraceId(traceId);
+        context.setShouldLog(true);
         context.setQueryParam(getQueryParam(exchange));
-        exchange.getResponse().getHeaders().set("trace-id", context.getTraceId());
-        return decorate(exchange, context).flatMap(v -> {
-            if (context.isShouldLog())
-                LOGGER.info(context.buildLogRequest());
-            return chain.filter(buildQueryParamURI(v, context));
-        }).doFinally(signal -> {
-            context.setResponseHeader(exchange.getResponse());
-            if (context.isShouldLog())
-                LOGGER.info(context.buildLogResponse(exchange.getResponse().getStatusCode()));
+        AtomicBoolean requestLogged = new AtomicBoolean();
+        Runnable logRequest = () -> {
+            if (requestLogged.compareAndSet(false, true))
+                accessLog.publish(AccessLogRecord.request(context));
+        };
+        MediaType contentType = exchange.getRequest().getHeaders().getContentType();
+        BodyCapture requestCapture = requestCapture(contentType);
+        BodyCapture responseCapture = responseBodyLimit > 0 ? new BodyCapture(responseBodyLimit, budget) : null;
+        ServerWebExchange decorator = new AceServerWebExchangeDecorator(exchange, configurer, requestCapture, () -> {
+            if (tail) return;
+            captureRequest(exchange, context, requestCapture, contentType);
+            logRequest.run();
+        }, responseCapture);
+        if (!tail && !hasBody(exchange.getRequest().getHeaders()))
+            logRequest.run();
+        return chain.filter(buildQueryParamURI(decorator, context.getQueryParam())).doFinally(signal -> {
             LOGGER.debug("SignalType {}", signal);
             if (SignalType.CANCEL.equals(signal))
                 LOGGER.warn("client {} request '{}'", signal, context.getEndpoint());
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            if (tail && !qualifies(signal, status, System.nanoTime() - start)) {
+                if (requestCapture != null) requestCapture.discard();
+                if (responseCapture != null) responseCapture.discard();
+                return;
+            }
+            if (tail) captureRequest(exchange, context, requestCapture, contentType);
+            logRequest.run();
+            if (responseCapture != null) {
+                String body = responseCapture.finish();
+                if (!body.isEmpty()) {
+                    context.setResponseBody(body);
+                    exchange.getAttributes().put(RESPONSE_BODY_ATTR, body);
+                }
+            }
+            context.setResponseHeader(exchange.getResponse());
+            accessLog.publish(AccessLogRecord.response(context, status));
         });
     }
 
-    private Mono<ServerWebExchange> decorate(ServerWebExchange exchange, ServerContext context) {
-        return DataBufferUtils.join(exchange.getRequest().getBody()).map(buffer -> {
-            LOGGER.debug("read request body");
-            byte[] bytes = new byte[buffer.readableByteCount()];
-            buffer.read(bytes);
-            DataBufferUtils.release(buffer);
-            return bytes;
-        }).defaultIfEmpty(new byte[]{}).flatMap(bytes -> {
-            AceServerWebExchangeDecorator decorator = new AceServerWebExchangeDecorator(exchange, configurer, bytes);
-            MediaType contentType = decorator.getRequest().getHeaders().getContentType();
-            String body = new String(bytes, StandardCharsets.UTF_8);
-            if (MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
-                context.setRequestBody(body);
-                decorator.getAttributes().put(REQUEST_BODY_ATTR, body);
-            } else if (MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)) {
-                context.appendParameter(body);
-                decorator.getAttributes().put(REQUEST_QUERY_PARAM_ATTR, buildParameter(body));
-            } else if (MediaType.MULTIPART_FORM_DATA.isCompatibleWith(contentType)) {
-                LOGGER.debug("read multipart form data request");
-                return decorateMultipartData(decorator, context);
-            }
-            return Mono.just(decorator);
-        });
+    private BodyCapture requestCapture(MediaType contentType) {
+        if (MediaType.MULTIPART_FORM_DATA.isCompatibleWith(contentType))
+            return MultipartCapture.of(contentType, multipartFieldLimit, ServerContext::isMaskedField);
+        int limit = bodyLimit(contentType);
+        return limit > 0 ? new BodyCapture(limit, budget) : null;
     }
 
-    private Mono<ServerWebExchange> decorateMultipartData(AceServerWebExchangeDecorator decorator, ServerContext context) {
-        return decorator.getMultipartData().doOnNext(v -> {
-            List<Part> parts = v.values().parallelStream().flatMap(Collection::stream).collect(Collectors.toList());
-            List<String> files = new ArrayList<>();
-            StringBuilder builder = new StringBuilder();
-            for (Part part : parts) {
-                if (part instanceof FilePart)
-                    files.add(((FilePart) part).filename());
-                else if (part instanceof FormFieldPart)
-                    builder.append(String.format(PARAM_FORMAT, part.name(), ((FormFieldPart) part).value()));
-            }
-            String string = builder.toString();
-            string = string.substring(0, string.length() - 1);
-            context.appendParameter(string);
-            context.setFile(files.isEmpty() ? null : files.toString());
-        }).thenReturn(decorator);
+    private void captureRequest(ServerWebExchange exchange, ServerContext context, BodyCapture capture, MediaType contentType) {
+        if (capture == null) return;
+        if (capture instanceof MultipartCapture) {
+            MultipartCapture multipart = (MultipartCapture) capture;
+            LOGGER.debug("inspected {} multipart request body bytes", multipart.getSize());
+            context.appendParameter(multipart.getParameter());
+            context.setFile(multipart.getFiles());
+            return;
+        }
+        String body = capture.finish();
+        LOGGER.debug("captured {} of {} request body bytes", body.length(), capture.getSize());
+        if (MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            context.setRequestBody(body);
+            exchange.getAttributes().put(REQUEST_BODY_ATTR, body);
+        } else if (MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)) {
+            context.appendParameter(ServerContext.maskParameters(body));
+            exchange.getAttributes().put(REQUEST_QUERY_PARAM_ATTR, buildParameter(body));
+        }
+    }
+
+    private boolean sample(String path) {
+        double rate = sampleRate;
+        if (sampleRoutes != null) {
+            Optional<RouteMatch> route = sampleRoutes.find(path);
+            if (route.isPresent()) rate = sampleRouteRates.get(route.get().getEntity().getId());
+        }
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private boolean qualifies(SignalType signal, HttpStatusCode status, long elapsedNanos) {
+        return SignalType.CANCEL.equals(signal) || SignalType.ON_ERROR.equals(signal)
+                || status == null || status.is4xxClientError() || status.is5xxServerError()
+                || elapsedNanos >= slowThresholdNanos;
+    }
+
+    private int bodyLimit(MediaType contentType) {
+        if (contentType == null) return defaultBodyLimit;
+        for (Map.Entry<MediaType, Integer> entry : bodyLimits.entrySet()) {
+            if (entry.getKey().isCompatibleWith(contentType)) return entry.getValue();
+        }
+        return defaultBodyLimit;
     }
 
-    private ServerWebExchange buildQueryParamURI(ServerWebExchange exchange, ServerContext context) {
-        if (StringUtils.hasText(exchange.getRequest().getURI().getRawQuery()) && StringUtils.hasText(context.getQueryParam())) {
+    private static boolean hasBody(HttpHeaders headers) {
+        return headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+    }
+
+    private ServerWebExchange buildQueryParamURI(ServerWebExchange exchange, String queryParam) {
+        if (StringUtils.hasText(exchange.getRequest().getURI().getRawQuery()) && StringUtils.hasText(queryParam)) {
             try {
                 String originalURI = exchange.getRequest().getURI().toString();
                 String url = originalURI.split("\\?")[0];
-                String newUrl = String.format("%s?%s", url, context.getQueryParam());
+                String newUrl = String.format("%s?%s", url, queryParam);
                 return exchange.mutate().request(exchange.getRequest().mutate().uri(new URI(newUrl)).build()).build();
             } catch (URISyntaxException e) {
                 LOGGER.warn("exception occurred while rebuild query param URI {}", e.getMessage());
@@ -141,11 +238,6 @@ public class LoggingFilter implements WebFilter, Ordered {
         return exchange;
     }
 
-    private boolean shouldLog(ServerWebExchange exchange) {
-        Set<String> excludes = new HashSet<>(Arrays.asList(DEFAULT_EXCLUDE_ANT_PATH_MATCH));
-        return excludes.parallelStream().noneMatch(v -> MATCHER.match(v, exchange.getRequest().getPath().value()));
-    }
-
     private String getQueryParam(ServerWebExchange exchange) {
         MultiValueMap<String, String> param = exchange.getRequest().getQueryParams();
         if (param.isEmpty()) return "";
@@ -1,6 +1,7 @@
 package com.jarvis.sidecar.filter;
 
 import com.jarvis.sidecar.condition.ConditionalOnEnvironment;
+import com.jarvis.sidecar.model.RouteDescriptor;
 import com.jarvis.sidecar.service.SecurityResourceService;
 import com.jarvis.sidecar.util.ContextUtil;
 import org.json.JSONObject;
@@ -18,8 +19,6 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
-import org.springframework.util.PathMatcher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
@@ -35,17 +34,8 @@ public class ServiceAccessFilter implements WebFilter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ServiceAccessFilter.class);
 
-    public static final List<String> DEFAULT_EXCLUDE_ANT_PATH = List.of(
-            "/actuator/**", "/index.html", "/index", "/favicon.ico",
-            "/swagger/**", "/swagger-ui/**", "/swagger-ui.html", "/swagger-ui/index.html",
-            "/swagger-resources/**", "/api-docs/service/**",
-            "/v2/api-docs/**", "/v3/api-docs/**", "/webjars/**",
-            "/configuration/security/**", "/configuration/ui/**",
-            "/image/**", "/scss/**", "/css/**", "/js/**", "/zipkin/**", "/k8s/registry/list");
-
     private static final Authentication ANONYMOUS = new AnonymousAuthenticationToken("key", "anonymous",
             AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
-    private static final PathMatcher MATCHER = new AntPathMatcher();
 
     private final String serviceId;
     private final String serviceClaim;
@@ -62,10 +52,10 @@ public class ServiceAccessFilter implements WebFilter {
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
-        if (securityResource.isDeny(exchange))
+        RouteDescriptor route = securityResource.describe(exchange);
+        if (route.isDeny())
             return accessDenied(exchange);
-        if (securityResource.isPermit(exchange) || DEFAULT_EXCLUDE_ANT_PATH.parallelStream().anyMatch(v ->
-                MATCHER.match(v, exchange.getRequest().getPath().value())))
+        if (route.isPermit() || route.isServiceExcluded())
             return chain.filter(exchange);
         return ReactiveSecurityContextHolder.getContext()
                 .map(SecurityContext::getAuthentication)
@@ -0,0 +1,107 @@
+package com.jarvis.sidecar.model;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+public final class AccessLogRecord {
+
+    public static final String REQUEST = "REQUEST";
+    public static final String RESPONSE = "RESPONSE";
+
+    private final String type;
+    private final long timestamp;
+    private final String uuid;
+    private final String traceId;
+    private final String method;
+    private final String endpoint;
+    private final String ip;
+    private final int status;
+    private final HttpHeaders headers;
+    private final String file;
+    private final String parameter;
+    private final String body;
+
+    private AccessLogRecord(String type, ServerContext context, int status, HttpHeaders headers, String file,
+                            String parameter, String body) {
+        this.type = type;
+        this.timestamp = System.currentTimeMillis();
+        this.uuid = context.getUuid();
+        this.traceId = context.getTraceId();
+        this.method = context.getMethod();
+        this.endpoint = context.getEndpoint();
+        this.ip = context.getIp();
+        this.status = status;
+        this.headers = headers;
+        this.file = file;
+        this.parameter = parameter;
+        this.body = body;
+    }
+
+    public static AccessLogRecord request(ServerContext context) {
+        return new AccessLogRecord(REQUEST, context, -1, context.getRequestHeader(), context.getFile(),
+                context.getParameter(), context.getRawRequestBody());
+    }
+
+    public static AccessLogRecord response(ServerContext context, HttpStatusCode status) {
+        return new AccessLogRecord(RESPONSE, context, Optional.ofNullable(status).map(HttpStatusCode::value).orElse(-1),
+                context.getResponseHeader(), null, null, context.getRawResponseBody());
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String toText() {
+        StringBuilder log = new StringBuilder(type).append(" ");
+        log.append(REQUEST.equals(type) ? method : String.valueOf(status)).append(" ");
+        log.append(uuid).append(", ");
+        log.append(endpoint).append(", ");
+        log.append(ip);
+        String header = ServerContext.buildHeader(headers);
+        if (StringUtils.isNotEmpty(header))
+            log.append(", ").append(header);
+        if (StringUtils.isNotEmpty(file))
+            log.append(", files:").append(file);
+        if (StringUtils.isNotEmpty(parameter))
+            log.append(", parameter:").append(parameter);
+        String compact = ServerContext.compactBody(body);
+        if (StringUtils.isNotEmpty(compact))
+            log.append(", body:").append(compact);
+        return log.toString();
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("type", type);
+        map.put("timestamp", timestamp);
+        map.put("uuid", uuid);
+        map.put("trace_id", traceId);
+        map.put("method", method);
+        map.put("endpoint", endpoint);
+        map.put("ip", ip);
+        if (RESPONSE.equals(type)) map.put("status", status);
+        if (headers != null && !headers.isEmpty()) map.put("headers", headers);
+        if (StringUtils.isNotEmpty(file)) map.put("files", file);
+        if (StringUtils.isNotEmpty(parameter)) map.put("parameter", parameter);
+        String compact = ServerContext.compactBody(body);
+        if (StringUtils.isNotEmpty(compact)) map.put("body", compact);
+        return map;
+    }
+}
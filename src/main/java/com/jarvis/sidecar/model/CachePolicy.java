@@ -0,0 +1,75 @@
+package com.jarvis.sidecar.model;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+
+public class CachePolicy {
+
+    private boolean enabled = true;
+    private long ttl;
+    private long maxTtl = 3600;
+    private long staleWhileRevalidate;
+    private Collection<String> varyHeaders = new HashSet<>();
+    private Collection<String> varyClaims = new HashSet<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getMaxTtl() {
+        return maxTtl;
+    }
+
+    public void setMaxTtl(long maxTtl) {
+        this.maxTtl = maxTtl;
+    }
+
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public Collection<String> getVaryHeaders() {
+        return Optional.ofNullable(varyHeaders).orElse(new HashSet<>());
+    }
+
+    public void setVaryHeaders(Collection<String> varyHeaders) {
+        this.varyHeaders = varyHeaders;
+    }
+
+    public Collection<String> getVaryClaims() {
+        return Optional.ofNullable(varyClaims).orElse(new HashSet<>());
+    }
+
+    public void setVaryClaims(Collection<String> varyClaims) {
+        this.varyClaims = varyClaims;
+    }
+
+    @Override
+    public String toString() {
+        return "CachePolicy{" +
+                "enabled=" + enabled +
+                ", ttl=" + ttl +
+                ", maxTtl=" + maxTtl +
+                ", staleWhileRevalidate=" + staleWhileRevalidate +
+                ", varyHeaders=" + varyHeaders +
+                ", varyClaims=" + varyClaims +
+                '}';
+    }
+}
@@ -0,0 +1,70 @@
+package com.jarvis.sidecar.model;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CachedResponse {
+
+    private final HttpStatusCode status;
+    private final HttpHeaders headers;
+    private final String body;
+    private final long storedAt;
+    private final long freshUntil;
+    private final long staleUntil;
+    private final int weight;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
+    public CachedResponse(ResponseEntity<String> entity, long storedAt, long freshUntil, long staleUntil) {
+        this.status = entity.getStatusCode();
+        this.headers = HttpHeaders.readOnlyHttpHeaders(new HttpHeaders(entity.getHeaders()));
+        this.body = entity.getBody();
+        this.storedAt = storedAt;
+        this.freshUntil = freshUntil;
+        this.staleUntil = staleUntil;
+        int size = body == null ? 0 : body.length();
+        for (var entry : headers.entrySet()) {
+            size += entry.getKey().length();
+            for (String value : entry.getValue())
+                size += value.length();
+        }
+        this.weight = size;
+    }
+
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    public long getFreshUntil() {
+        return freshUntil;
+    }
+
+    public long getStaleUntil() {
+        return staleUntil;
+    }
+
+    public boolean isFresh(long now) {
+        return now < freshUntil;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public boolean markRevalidating() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+    public void clearRevalidating() {
+        revalidating.set(false);
+    }
+
+    public ResponseEntity<String> toEntity(long now) {
+        HttpHeaders copy = new HttpHeaders();
+        copy.putAll(headers);
+        copy.set(HttpHeaders.AGE, String.valueOf(Math.max(0, (now - storedAt) / 1000)));
+        return new ResponseEntity<>(body, copy, status);
+    }
+}
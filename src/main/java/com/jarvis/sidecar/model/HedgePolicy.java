@@ -0,0 +1,51 @@
+package com.jarvis.sidecar.model;
+
+public class HedgePolicy {
+
+    private boolean enabled = true;
+    private long delay = 100;
+    private double percentile;
+    private int maxPercent = 10;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public int getMaxPercent() {
+        return maxPercent;
+    }
+
+    public void setMaxPercent(int maxPercent) {
+        this.maxPercent = maxPercent;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgePolicy{" +
+                "enabled=" + enabled +
+                ", delay=" + delay +
+                ", percentile=" + percentile +
+                ", maxPercent=" + maxPercent +
+                '}';
+    }
+}
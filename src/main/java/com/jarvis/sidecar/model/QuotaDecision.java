@@ -0,0 +1,58 @@
+package com.jarvis.sidecar.model;
+
+import org.springframework.http.HttpHeaders;
+
+public class QuotaDecision {
+
+    public static final QuotaDecision UNLIMITED = new QuotaDecision(true, null, null, 0, 0, 0);
+
+    private final boolean allowed;
+    private final String client;
+    private final String tier;
+    private final long limit;
+    private final long remaining;
+    private final long resetSeconds;
+
+    public QuotaDecision(boolean allowed, String client, String tier, long limit, long remaining, long resetSeconds) {
+        this.allowed = allowed;
+        this.client = client;
+        this.tier = tier;
+        this.limit = limit;
+        this.remaining = remaining;
+        this.resetSeconds = resetSeconds;
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    public String getClient() {
+        return client;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        if (this == UNLIMITED) return headers;
+        headers.set("X-RateLimit-Limit", String.valueOf(limit));
+        headers.set("X-RateLimit-Remaining", String.valueOf(remaining));
+        headers.set("X-RateLimit-Reset", String.valueOf(resetSeconds));
+        if (!allowed) headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(resetSeconds));
+        return headers;
+    }
+
+    @Override
+    public String toString() {
+        return "QuotaDecision{" +
+                "allowed=" + allowed +
+                ", client='" + client + '\'' +
+                ", tier='" + tier + '\'' +
+                ", limit=" + limit +
+                ", remaining=" + remaining +
+                ", resetSeconds=" + resetSeconds +
+                '}';
+    }
+}
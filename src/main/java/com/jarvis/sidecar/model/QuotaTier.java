@@ -0,0 +1,73 @@
+package com.jarvis.sidecar.model;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+public class QuotaTier {
+
+    private String name;
+    private Collection<String> clients = new HashSet<>();
+    private Collection<String> roles = new HashSet<>();
+    private long capacity;
+    private double refillPerSecond;
+
+    public QuotaTier() {
+    }
+
+    public QuotaTier(String name, long capacity, double refillPerSecond) {
+        this.name = name;
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Collection<String> getClients() {
+        return clients;
+    }
+
+    public void setClients(Collection<String> clients) {
+        this.clients = clients == null ? new HashSet<>() : clients;
+    }
+
+    public Collection<String> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(Collection<String> roles) {
+        this.roles = roles == null ? new HashSet<>() : roles;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public double getRefillPerSecond() {
+        return refillPerSecond;
+    }
+
+    public void setRefillPerSecond(double refillPerSecond) {
+        this.refillPerSecond = refillPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "QuotaTier{" +
+                "name='" + name + '\'' +
+                ", clients=" + clients +
+                ", roles=" + roles +
+                ", capacity=" + capacity +
+                ", refillPerSecond=" + refillPerSecond +
+                '}';
+    }
+}
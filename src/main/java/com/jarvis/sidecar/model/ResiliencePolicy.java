@@ -0,0 +1,125 @@
+package com.jarvis.sidecar.model;
+
+import java.util.Objects;
+
+public class ResiliencePolicy {
+
+    private Boolean perClient;
+    private Integer limitForPeriod;
+    private Long limitRefreshPeriod;
+    private Long timeoutDuration;
+    private Float failureRateThreshold;
+    private Integer slidingWindowSize;
+    private Integer minimumNumberOfCalls;
+    private Long waitDurationInOpenState;
+    private Integer maxConcurrentCalls;
+
+    public Boolean getPerClient() {
+        return perClient;
+    }
+
+    public void setPerClient(Boolean perClient) {
+        this.perClient = perClient;
+    }
+
+    public Integer getLimitForPeriod() {
+        return limitForPeriod;
+    }
+
+    public void setLimitForPeriod(Integer limitForPeriod) {
+        this.limitForPeriod = limitForPeriod;
+    }
+
+    public Long getLimitRefreshPeriod() {
+        return limitRefreshPeriod;
+    }
+
+    public void setLimitRefreshPeriod(Long limitRefreshPeriod) {
+        this.limitRefreshPeriod = limitRefreshPeriod;
+    }
+
+    public Long getTimeoutDuration() {
+        return timeoutDuration;
+    }
+
+    public void setTimeoutDuration(Long timeoutDuration) {
+        this.timeoutDuration = timeoutDuration;
+    }
+
+    public Float getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(Float failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public Integer getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    public void setSlidingWindowSize(Integer slidingWindowSize) {
+        this.slidingWindowSize = slidingWindowSize;
+    }
+
+    public Integer getMinimumNumberOfCalls() {
+        return minimumNumberOfCalls;
+    }
+
+    public void setMinimumNumberOfCalls(Integer minimumNumberOfCalls) {
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+    }
+
+    public Long getWaitDurationInOpenState() {
+        return waitDurationInOpenState;
+    }
+
+    public void setWaitDurationInOpenState(Long waitDurationInOpenState) {
+        this.waitDurationInOpenState = waitDurationInOpenState;
+    }
+
+    public Integer getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public void setMaxConcurrentCalls(Integer maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(perClient, limitForPeriod, limitRefreshPeriod, timeoutDuration, failureRateThreshold,
+                slidingWindowSize, minimumNumberOfCalls, waitDurationInOpenState, maxConcurrentCalls);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ResiliencePolicy)) return false;
+        ResiliencePolicy that = (ResiliencePolicy) o;
+        return Objects.equals(perClient, that.perClient)
+                && Objects.equals(limitForPeriod, that.limitForPeriod)
+                && Objects.equals(limitRefreshPeriod, that.limitRefreshPeriod)
+                && Objects.equals(timeoutDuration, that.timeoutDuration)
+                && Objects.equals(failureRateThreshold, that.failureRateThreshold)
+                && Objects.equals(slidingWindowSize, that.slidingWindowSize)
+                && Objects.equals(minimumNumberOfCalls, that.minimumNumberOfCalls)
+                && Objects.equals(waitDurationInOpenState, that.waitDurationInOpenState)
+                && Objects.equals(maxConcurrentCalls, that.maxConcurrentCalls);
+    }
+
+    @Override
+    public String toString() {
+        return "ResiliencePolicy{" +
+                "perClient=" + perClient +
+                ", limitForPeriod=" + limitForPeriod +
+                ", limitRefreshPeriod=" + limitRefreshPeriod +
+                ", timeoutDuration=" + timeoutDuration +
+                ", failureRateThreshold=" + failureRateThreshold +
+                ", slidingWindowSize=" + slidingWindowSize +
+                ", minimumNumberOfCalls=" + minimumNumberOfCalls +
+                ", waitDurationInOpenState=" + waitDurationInOpenState +
+                ", maxConcurrentCalls=" + maxConcurrentCalls +
+                '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.jarvis.sidecar.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+
+public class RouteDescriptor {
+
+    private final RouteMatch route;
+    private final boolean permit;
+    private final boolean deny;
+    private final boolean logExcluded;
+    private final boolean serviceExcluded;
+    private final boolean admin;
+
+    public RouteDescriptor(RouteMatch route, boolean permit, boolean deny, boolean logExcluded, boolean serviceExcluded, boolean admin) {
+        this.route = route;
+        this.permit = permit;
+        this.deny = deny;
+        this.logExcluded = logExcluded;
+        this.serviceExcluded = serviceExcluded;
+        this.admin = admin;
+    }
+
+    public Optional<RouteMatch> getRoute() {
+        return Optional.ofNullable(route);
+    }
+
+    public String getTemplate() {
+        return route == null ? null : route.getPattern();
+    }
+
+    public Collection<String> getRoles() {
+        return route == null || route.getEntity().getRoles() == null ? Collections.emptySet() : route.getEntity().getRoles();
+    }
+
+    public boolean isPermit() {
+        return permit;
+    }
+
+    public boolean isDeny() {
+        return deny;
+    }
+
+    public boolean isLogExcluded() {
+        return logExcluded;
+    }
+
+    public boolean isServiceExcluded() {
+        return serviceExcluded;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteDescriptor{" +
+                "route=" + route +
+                ", permit=" + permit +
+                ", deny=" + deny +
+                ", logExcluded=" + logExcluded +
+                ", serviceExcluded=" + serviceExcluded +
+                ", admin=" + admin +
+                '}';
+    }
+}
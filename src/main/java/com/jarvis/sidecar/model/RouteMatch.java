@@ -0,0 +1,44 @@
+package com.jarvis.sidecar.model;
+
+public class RouteMatch {
+
+    private final SecurityEntity entity;
+    private final String pattern;
+    private final long roleMask;
+    private final boolean roleMaskComplete;
+
+    public RouteMatch(SecurityEntity entity, String pattern) {
+        this(entity, pattern, 0, false);
+    }
+
+    public RouteMatch(SecurityEntity entity, String pattern, long roleMask, boolean roleMaskComplete) {
+        this.entity = entity;
+        this.pattern = pattern;
+        this.roleMask = roleMask;
+        this.roleMaskComplete = roleMaskComplete;
+    }
+
+    public SecurityEntity getEntity() {
+        return entity;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public long getRoleMask() {
+        return roleMask;
+    }
+
+    public boolean isRoleMaskComplete() {
+        return roleMaskComplete;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteMatch{" +
+                "entity=" + entity.getId() +
+                ", pattern='" + pattern + '\'' +
+                '}';
+    }
+}
@@ -14,6 +14,10 @@ public class SecurityEntity {
     private Collection<String> endpoints = new HashSet<>();
     private Collection<String> roles = new HashSet<>();
     private Collection<String> methods = new HashSet<>();
+    private CachePolicy cache;
+    private Boolean coalesce;
+    private HedgePolicy hedge;
+    private ResiliencePolicy resilience;
 
     public String getId() {
         return id;
@@ -79,6 +83,38 @@ public class SecurityEntity {
         this.methods = methods;
     }
 
+    public CachePolicy getCache() {
+        return cache;
+    }
+
+    public void setCache(CachePolicy cache) {
+        this.cache = cache;
+    }
+
+    public Boolean getCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(Boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public HedgePolicy getHedge() {
+        return hedge;
+    }
+
+    public void setHedge(HedgePolicy hedge) {
+        this.hedge = hedge;
+    }
+
+    public ResiliencePolicy getResilience() {
+        return resilience;
+    }
+
+    public void setResilience(ResiliencePolicy resilience) {
+        this.resilience = resilience;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(id);
@@ -102,6 +138,10 @@ public class SecurityEntity {
                 ", endpoints=" + endpoints +
                 ", roles=" + roles +
                 ", methods=" + methods +
+                ", cache=" + cache +
+                ", coalesce=" + coalesce +
+                ", hedge=" + hedge +
+                ", resilience=" + resilience +
                 '}';
     }
 }
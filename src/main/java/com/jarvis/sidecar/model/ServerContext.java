@@ -1,13 +1,12 @@
 package com.jarvis.sidecar.model;
 
 import com.jarvis.sidecar.filter.LoggingFilter;
+import com.jarvis.sidecar.util.JsonLogRewriter;
+import com.jarvis.sidecar.util.RequestIds;
 import org.apache.commons.lang3.StringUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatusCode;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.util.Assert;
@@ -20,6 +19,7 @@ import java.util.*;
 public class ServerContext {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerContext.class);
+    private static final JsonLogRewriter REWRITER = JsonLogRewriter.fromEnvironment();
 
     private static final List<String> IP_HEADER_CANDIDATES = Collections.unmodifiableList(Arrays.asList(
             "X-Forwarded-For", "Proxy-Client-IP", "WL-Proxy-Client-IP",
@@ -29,6 +29,7 @@ public class ServerContext {
             "REMOTE_ADDR"));
 
     private final String uuid;
+    private final ServerHttpRequest request;
     private String ip;
     private String endpoint;
     private String method;
@@ -37,17 +38,15 @@ public class ServerContext {
     private String queryParam;
     private String parameter;
     private String file;
-    private HttpHeaders requestHeader;
     private HttpHeaders responseHeader;
     private boolean shouldLog = false;
     private String traceId;
 
     public ServerContext(ServerWebExchange exchange) {
         Assert.notNull(exchange, "Server web exchange must not be null");
-        this.uuid = UUID.randomUUID().toString();
-        ServerHttpRequest request = exchange.getRequest();
+        this.uuid = RequestIds.next();
+        this.request = exchange.getRequest();
         exchange.getAttributes().put(LoggingFilter.SERVER_CONTEXT_ATTR, this);
-        this.setRequestHeader(request);
         this.setMethod(request.getMethod().name());
         this.setEndpoint(request.getPath().value());
     }
@@ -57,6 +56,7 @@ public class ServerContext {
     }
 
     public String getIp() {
+        if (ip == null) ip = resolveIp();
         return ip;
     }
 
@@ -88,23 +88,20 @@ public class ServerContext {
         this.file = file;
     }
 
-    public void setRequestHeader(ServerHttpRequest request) {
-        this.requestHeader = request.getHeaders();
+    private String resolveIp() {
+        HttpHeaders headers = request.getHeaders();
         for (String header : IP_HEADER_CANDIDATES) {
-            String requestIp = requestHeader.getFirst(header);
-            if (StringUtils.isNotEmpty(requestIp) && !"unknown".equalsIgnoreCase(requestIp)) {
-                this.ip = requestIp;
-                break;
-            }
+            String requestIp = headers.getFirst(header);
+            if (StringUtils.isNotEmpty(requestIp) && !"unknown".equalsIgnoreCase(requestIp))
+                return requestIp;
         }
-        if (StringUtils.isEmpty(ip) && request.getRemoteAddress() != null)
-            this.ip = Optional.of(request).map(ServerHttpRequest::getRemoteAddress)
-                    .map(InetSocketAddress::getHostString)
-                    .orElse(StringUtils.EMPTY);
+        return Optional.ofNullable(request.getRemoteAddress())
+                .map(InetSocketAddress::getHostString)
+                .orElse(StringUtils.EMPTY);
     }
 
     public HttpHeaders getRequestHeader() {
-        return requestHeader;
+        return request.getHeaders();
     }
 
     public void setResponseHeader(ServerHttpResponse response) {
@@ -139,16 +136,10 @@ public class ServerContext {
     }
 
     public String getRequestBody() {
-        try {
-            if (StringUtils.isEmpty(requestBody))
-                return "";
-            else if (requestBody.startsWith("{"))
-                return new JSONObject(requestBody).toString();
-            else if (requestBody.startsWith("["))
-                return new JSONArray(requestBody).toString();
-        } catch (Exception e) {
-            LOGGER.debug("exception occurred while build log request body method {} {}", method, e.getMessage());
-        }
+        return compactBody(requestBody);
+    }
+
+    public String getRawRequestBody() {
         return requestBody;
     }
 
@@ -157,19 +148,17 @@ public class ServerContext {
     }
 
     public String getResponseBody() {
-        try {
-            if (StringUtils.isEmpty(responseBody))
-                return "";
-            else if (responseBody.startsWith("{"))
-                return new JSONObject(responseBody).toString();
-            else if (responseBody.startsWith("["))
-                return new JSONArray(responseBody).toString();
-        } catch (Exception e) {
-            LOGGER.debug("exception occurred while build log response body {}", e.getMessage());
-        }
+        return compactBody(responseBody);
+    }
+
+    public String getRawResponseBody() {
         return responseBody;
     }
 
+    public String getParameter() {
+        return parameter;
+    }
+
     public void setResponseBody(String responseBody) {
         this.responseBody = responseBody;
     }
@@ -182,38 +171,28 @@ public class ServerContext {
         this.shouldLog = shouldLog;
     }
 
-    public String buildLogRequest() {
-        StringBuilder log = new StringBuilder("REQUEST ");
-        log.append(getMethod()).append(" ");
-        log.append(getUuid()).append(", ");
-        log.append(getEndpoint()).append(", ");
-        log.append(getIp());
-        String header = buildHeader(requestHeader);
-        if (StringUtils.isNotEmpty(header))
-            log.append(", ").append(header);
-        if (StringUtils.isNotEmpty(file))
-            log.append(", files:").append(file);
-        if (StringUtils.isNotEmpty(parameter))
-            log.append(", parameter:").append(parameter);
-        String body = truncateBody(getRequestBody(), -1);
-        if (StringUtils.isNotEmpty(body))
-            log.append(", body:").append(body);
-        return log.toString();
-    }
-
-    public String buildLogResponse(HttpStatusCode status) {
-        StringBuilder log = new StringBuilder("RESPONSE ");
-        log.append(Optional.ofNullable(status).map(HttpStatusCode::value).orElse(-1)).append(" ");
-        log.append(getUuid()).append(", ");
-        log.append(getEndpoint()).append(", ");
-        log.append(getIp());
-        String header = buildHeader(responseHeader);
-        if (StringUtils.isNotEmpty(header))
-            log.append(", ").append(header);
-        String body = truncateBody(getResponseBody(), -1);
-        if (StringUtils.isNotEmpty(body))
-            log.append(", body:").append(body);
-        return log.toString();
+    public static String compactBody(String body) {
+        try {
+            if (StringUtils.isEmpty(body))
+                return "";
+            // leading whitespace or a byte order mark must not let a json body skip the masking
+            int start = 0;
+            while (start < body.length() && (Character.isWhitespace(body.charAt(start)) || body.charAt(start) == '\uFEFF'))
+                start++;
+            if (start < body.length() && (body.charAt(start) == '{' || body.charAt(start) == '['))
+                return REWRITER.rewrite(body.substring(start));
+        } catch (Exception e) {
+            LOGGER.debug("exception occurred while compact log body {}", e.getMessage());
+        }
+        return body;
+    }
+
+    public static String maskParameters(String parameters) {
+        return REWRITER.maskParameters(parameters);
+    }
+
+    public static boolean isMaskedField(String name) {
+        return REWRITER.isMaskedField(name);
     }
 
     public static String buildHeader(MultiValueMap<String, String> headers) {
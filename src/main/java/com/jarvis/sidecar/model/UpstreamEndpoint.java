@@ -0,0 +1,107 @@
+package com.jarvis.sidecar.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UpstreamEndpoint {
+
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String host;
+    private final String port;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntil;
+    private volatile boolean healthy = true;
+    private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToRawLongBits(0));
+    private final AtomicLong ewmaStamp = new AtomicLong(System.nanoTime());
+
+    public UpstreamEndpoint(String host, String port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    // host, host:port, [ipv6] or [ipv6]:port; an ipv6 host keeps its brackets for use in urls
+    public static UpstreamEndpoint parse(String endpoint, String defaultPort) {
+        String value = endpoint.trim();
+        if (value.startsWith("[")) {
+            int close = value.indexOf(']');
+            if (close < 0) throw new IllegalArgumentException("invalid upstream endpoint '" + endpoint + "'");
+            String port = value.length() > close + 2 && value.charAt(close + 1) == ':' ? value.substring(close + 2) : defaultPort;
+            return new UpstreamEndpoint(value.substring(0, close + 1), port);
+        }
+        int colon = value.lastIndexOf(':');
+        if (colon < 0) return new UpstreamEndpoint(value, defaultPort);
+        if (value.indexOf(':') != colon) return new UpstreamEndpoint("[" + value + "]", defaultPort);
+        return new UpstreamEndpoint(value.substring(0, colon), value.substring(colon + 1));
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getPort() {
+        return port;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public void setHealthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    public boolean isAvailable(long now) {
+        return healthy && now >= ejectedUntil;
+    }
+
+    public void begin() {
+        outstanding.incrementAndGet();
+    }
+
+    public void end() {
+        outstanding.decrementAndGet();
+    }
+
+    public void success(long latencyNanos) {
+        consecutiveFailures.set(0);
+        observe(latencyNanos);
+    }
+
+    public int failure(long latencyNanos) {
+        observe(latencyNanos);
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    public void eject(long until) {
+        this.ejectedUntil = until;
+        this.consecutiveFailures.set(0);
+    }
+
+    public double cost() {
+        return Double.longBitsToDouble(ewmaBits.get()) * (outstanding.get() + 1);
+    }
+
+    // each sample decays the average by the time since the previous one, concurrent samples each claim their own gap
+    private void observe(long latencyNanos) {
+        long now = System.nanoTime();
+        double weight = Math.exp(-Math.max(0, now - ewmaStamp.getAndSet(now)) / DECAY_NANOS);
+        while (true) {
+            long bits = ewmaBits.get();
+            double ewma = Double.longBitsToDouble(bits);
+            double next = latencyNanos > ewma ? latencyNanos : ewma * weight + latencyNanos * (1 - weight);
+            if (ewmaBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) return;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,98 @@
+package com.jarvis.sidecar.security;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.jarvis.sidecar.util.TokenDigest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import org.springframework.security.oauth2.server.resource.introspection.ReactiveOpaqueTokenIntrospector;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class CachingOpaqueTokenIntrospector implements ReactiveOpaqueTokenIntrospector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingOpaqueTokenIntrospector.class);
+
+    private final ReactiveOpaqueTokenIntrospector delegate;
+    private final AsyncCache<String, Introspection> cache;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    public CachingOpaqueTokenIntrospector(ReactiveOpaqueTokenIntrospector delegate, MeterRegistry registry,
+                                          Duration ttl, Duration negativeTtl, long maxSize) {
+        this.delegate = delegate;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Introspection>() {
+                    @Override
+                    public long expireAfterCreate(String key, Introspection value, long currentTime) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Introspection value, long currentTime, long currentDuration) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Introspection value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(registry, cache, "sidecar.introspection.cache");
+        LOG.info("introspection cache ttl {}, negative ttl {}, max size {}", ttl, negativeTtl, maxSize);
+    }
+
+    @Override
+    public Mono<OAuth2AuthenticatedPrincipal> introspect(String token) {
+        return Mono.fromFuture(() -> cache.get(TokenDigest.sha256(token), (key, executor) -> delegate.introspect(token)
+                        .map(this::active)
+                        .onErrorResume(BadOpaqueTokenException.class, ex -> Mono.just(inactive(ex)))
+                        .toFuture()), true)
+                .flatMap(Introspection::toMono);
+    }
+
+    private Introspection active(OAuth2AuthenticatedPrincipal principal) {
+        long ttl = ttlNanos;
+        Object exp = principal.getAttribute(OAuth2TokenIntrospectionClaimNames.EXP);
+        Instant expiresAt = exp instanceof Instant ? (Instant) exp
+                : exp instanceof Number ? Instant.ofEpochSecond(((Number) exp).longValue()) : null;
+        if (expiresAt != null)
+            ttl = Math.max(0, Math.min(ttl, Duration.between(Instant.now(), expiresAt).toNanos()));
+        return new Introspection(principal, null, ttl);
+    }
+
+    private Introspection inactive(BadOpaqueTokenException ex) {
+        LOG.debug("negative cache introspection, {}", ex.getMessage());
+        return new Introspection(null, ex, negativeTtlNanos);
+    }
+
+    private static class Introspection {
+
+        private final OAuth2AuthenticatedPrincipal principal;
+        private final BadOpaqueTokenException failure;
+        private final long ttlNanos;
+
+        Introspection(OAuth2AuthenticatedPrincipal principal, BadOpaqueTokenException failure, long ttlNanos) {
+            this.principal = principal;
+            this.failure = failure;
+            this.ttlNanos = ttlNanos;
+        }
+
+        Mono<OAuth2AuthenticatedPrincipal> toMono() {
+            return failure != null ? Mono.error(failure) : Mono.just(principal);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jarvis.sidecar.security;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.jarvis.sidecar.util.TokenDigest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.*;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingReactiveJwtDecoder.class);
+
+    private final ReactiveJwtDecoder delegate;
+    private final String type;
+    private final OAuth2TokenValidator<Jwt> validator = JwtValidators.createDefault();
+    private final AsyncCache<String, Jwt> cache;
+
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, String type, MeterRegistry registry, Duration ttl, long maxSize,
+                                     String... tags) {
+        this.delegate = delegate;
+        this.type = type;
+        long ttlNanos = ttl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, Jwt value, long currentTime) {
+                        Instant expiresAt = value.getExpiresAt();
+                        if (expiresAt == null) return ttlNanos;
+                        return Math.max(0, Math.min(ttlNanos, Duration.between(Instant.now(), expiresAt).toNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Jwt value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Jwt value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(registry, cache, "sidecar.jwt.cache", tags);
+        LOG.info("jwt cache ttl {}, max size {}, {}", ttl, maxSize, tags);
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        return Mono.fromFuture(() -> cache.get(TokenDigest.sha256(token), (key, executor) -> delegate.decode(token).toFuture()), true)
+                .flatMap(this::validate);
+    }
+
+    private Mono<Jwt> validate(Jwt jwt) {
+        Object typ = jwt.getHeaders().get("typ");
+        if (type != null && (typ == null || !type.equalsIgnoreCase(typ.toString())))
+            return Mono.error(new BadJwtException("invalid jwt type " + typ));
+        OAuth2TokenValidatorResult result = validator.validate(jwt);
+        if (result.hasErrors())
+            return Mono.error(new JwtValidationException("jwt validation failed " + result.getErrors(), result.getErrors()));
+        return Mono.just(jwt);
+    }
+}
@@ -1,7 +1,12 @@
 package com.jarvis.sidecar.security;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.nimbusds.jose.JOSEObjectType;
 import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
@@ -12,7 +17,10 @@ import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.ReactiveAuthenticationManagerResolver;
+import org.springframework.security.oauth2.jwt.JwtValidators;
 import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
 import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
 import org.springframework.security.oauth2.server.resource.authentication.OpaqueTokenReactiveAuthenticationManager;
 import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverter;
@@ -25,12 +33,19 @@ import reactor.core.publisher.Mono;
 import reactor.netty.http.client.HttpClient;
 
 import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CustomAuthenticationManagerResolver implements ReactiveAuthenticationManagerResolver<ServerWebExchange> {
 
-    private static final String JWT_PATTERN = "^[A-Za-z0-9-_=]+\\.[A-Za-z0-9-_=]+\\.[A-Za-z0-9-_.+/=]*$";
+    private static final String JWT_TYPE = "at+jwt";
+    private static final String DEFAULT_ISSUER = "default";
+    private static final JsonFactory FACTORY = JsonFactory.builder().build();
 
     private static final Logger LOG = LoggerFactory.getLogger(CustomAuthenticationManagerResolver.class);
 
@@ -40,8 +55,22 @@ public class CustomAuthenticationManagerResolver implements ReactiveAuthenticati
     private String clientSecret;
     private ReactiveAuthenticationManager jwtManager;
     private ReactiveAuthenticationManager opaqueManager;
+    private MeterRegistry meterRegistry;
+    private WebClient jwtWebClient;
+    private final Map<String, String> issuers = new HashMap<>();
+    private final Map<String, ReactiveAuthenticationManager> issuerManagers = new ConcurrentHashMap<>();
+    private final Map<String, RefreshingJwkSource> jwkSources = new ConcurrentHashMap<>();
+    private final ReactiveAuthenticationManager untrustedIssuer = authentication ->
+            Mono.error(new InvalidBearerTokenException("untrusted jwt issuer"));
 
     public CustomAuthenticationManagerResolver(String jwkSetUri, String introspectionUri, String clientId, String clientSecret) {
+        this(jwkSetUri, introspectionUri, clientId, clientSecret, Metrics.globalRegistry);
+    }
+
+    public CustomAuthenticationManagerResolver(String jwkSetUri, String introspectionUri, String clientId, String clientSecret,
+                                               MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Assert.notNull(meterRegistry, "Meter registry cannot be null");
         this.jwkSetUri = jwkSetUri;
         Assert.hasText(jwkSetUri, "Jwk set uri cannot be empty or null");
         this.introspectionUri = introspectionUri;
@@ -50,6 +79,12 @@ public class CustomAuthenticationManagerResolver implements ReactiveAuthenticati
         Assert.hasText(clientId, "Client id cannot be empty or null");
         this.clientSecret = clientSecret;
         Assert.hasText(clientSecret, "Client secret cannot be empty or null");
+        for (String issuer : StringUtils.commaDelimitedListToSet(System.getenv("JWT_ISSUERS"))) {
+            int index = issuer.indexOf('=');
+            Assert.isTrue(index > 0 && index < issuer.length() - 1, "Jwt issuer must be <issuer>=<jwk set uri>, " + issuer);
+            issuers.put(issuer.substring(0, index).trim(), issuer.substring(index + 1).trim());
+        }
+        if (!issuers.isEmpty()) LOG.info("trusted jwt issuers {}", issuers);
         setJwtWebClient(webClient(false));
         setOpaqueWebClient(webClient(true));
         LOG.debug("jwkSetUri '{}', introspectionUri '{}', client id '{}', client secret '{}'", jwkSetUri, introspectionUri, clientId, clientSecret);
@@ -57,7 +92,12 @@ public class CustomAuthenticationManagerResolver implements ReactiveAuthenticati
 
     public void setJwtWebClient(WebClient webClient) {
         Assert.notNull(webClient, "Web client cannot be null");
-        this.jwtManager = jwt(webClient);
+        this.jwtWebClient = webClient;
+        this.jwkSources.values().forEach(RefreshingJwkSource::dispose);
+        this.jwkSources.clear();
+        this.issuerManagers.clear();
+        this.jwtManager = jwt(jwkSetUri, null);
+        this.issuers.values().forEach(this::jwkSource);
     }
 
     public void setOpaqueWebClient(WebClient webClient) {
@@ -67,30 +107,102 @@ public class CustomAuthenticationManagerResolver implements ReactiveAuthenticati
 
     @Override
     public Mono<ReactiveAuthenticationManager> resolve(ServerWebExchange exchange) {
-        if (isJwtToken(exchange.getRequest())) {
+        String token = bearerToken(exchange.getRequest());
+        if (!isJwtToken(token)) {
+            LOG.info("invoke opaque authentication manager");
+            return Mono.just(opaqueManager);
+        }
+        if (issuers.isEmpty()) {
             LOG.info("invoke jwt authentication manager");
             return Mono.just(jwtManager);
         }
-        LOG.info("invoke opaque authentication manager");
-        return Mono.just(opaqueManager);
+        String issuer = issuer(token);
+        if (issuer == null) {
+            LOG.info("invoke jwt authentication manager");
+            return Mono.just(jwtManager);
+        }
+        String issuerJwkSetUri = issuers.get(issuer);
+        if (issuerJwkSetUri == null) {
+            LOG.warn("reject jwt from untrusted issuer '{}'", issuer);
+            return Mono.just(untrustedIssuer);
+        }
+        LOG.info("invoke jwt authentication manager of issuer '{}'", issuer);
+        return Mono.just(issuerManagers.computeIfAbsent(issuer, k -> jwt(issuerJwkSetUri, k)));
     }
 
-    private boolean isJwtToken(ServerHttpRequest request) {
+    private String bearerToken(ServerHttpRequest request) {
         String token = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
         if (StringUtils.hasText(token) && token.startsWith("Bearer "))
             token = token.substring(7);
-        return StringUtils.hasText(token) && Pattern.matches(JWT_PATTERN, token);
+        return token;
     }
 
-    private ReactiveAuthenticationManager jwt(WebClient jwtWebClient) {
+    private boolean isJwtToken(String token) {
+        if (!StringUtils.hasText(token)) return false;
+        int dots = 0;
+        int length = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                if (dots < 2 && length == 0) return false;
+                dots++;
+                length = 0;
+            } else if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '=' || (dots >= 2 && (c == '+' || c == '/'))) {
+                length++;
+            } else {
+                return false;
+            }
+        }
+        return dots >= 2;
+    }
+
+    private String issuer(String token) {
+        int start = token.indexOf('.') + 1;
+        int end = token.indexOf('.', start);
+        // stops at the iss claim, the rest of the payload is left to the decoder
+        try (JsonParser parser = FACTORY.createParser(Base64.getUrlDecoder().decode(token.substring(start, end)))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                JsonToken value = parser.nextToken();
+                if ("iss".equals(parser.currentName())) {
+                    String issuer = value.isScalarValue() ? parser.getValueAsString(null) : null;
+                    LOG.debug("unverified jwt issuer '{}'", issuer);
+                    return issuer;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IllegalArgumentException | IOException ex) {
+            LOG.debug("malformed jwt, {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private RefreshingJwkSource jwkSource(String jwkSetUri) {
+        return jwkSources.computeIfAbsent(jwkSetUri, uri -> new RefreshingJwkSource(jwtWebClient, uri, meterRegistry,
+                Duration.ofMillis(Long.parseLong(Optional.ofNullable(System.getenv("JWKS_REFRESH_INTERVAL")).orElse("300000"))),
+                Duration.ofMillis(Long.parseLong(Optional.ofNullable(System.getenv("JWKS_MAX_STALENESS")).orElse("86400000"))),
+                Duration.ofMillis(Long.parseLong(Optional.ofNullable(System.getenv("JWKS_REFETCH_INTERVAL")).orElse("30000")))));
+    }
+
+    private ReactiveAuthenticationManager jwt(String jwkSetUri, String issuer) {
         String roleClaim = Optional.ofNullable(System.getenv("ROLE_CLAIM")).orElse("roles");
-        NimbusReactiveJwtDecoder.JwkSetUriReactiveJwtDecoderBuilder decoderBuilder = NimbusReactiveJwtDecoder.withJwkSetUri(jwkSetUri)
+        NimbusReactiveJwtDecoder.JwkSourceReactiveJwtDecoderBuilder decoderBuilder = NimbusReactiveJwtDecoder.withJwkSource(jwkSource(jwkSetUri))
                 .jwtProcessorCustomizer(customizer -> customizer
-                        .setJWSTypeVerifier(new DefaultJOSEObjectTypeVerifier<>(new JOSEObjectType("at+jwt"))));
-        if (jwtWebClient != null) decoderBuilder.webClient(jwtWebClient);
+                        .setJWSTypeVerifier(new DefaultJOSEObjectTypeVerifier<>(new JOSEObjectType(JWT_TYPE))));
         ReactiveJwtAuthenticationConverter converter = new ReactiveJwtAuthenticationConverter();
         converter.setJwtGrantedAuthoritiesConverter(new CustomJwtGrantedAuthoritiesConverter(roleClaim));
-        JwtReactiveAuthenticationManager manager = new JwtReactiveAuthenticationManager(decoderBuilder.build());
+        NimbusReactiveJwtDecoder nimbusDecoder = decoderBuilder.build();
+        if (issuer != null) nimbusDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+        ReactiveJwtDecoder decoder = nimbusDecoder;
+        long cacheTtl = Long.parseLong(Optional.ofNullable(System.getenv("JWT_CACHE_TTL")).orElse("0"));
+        if (cacheTtl > 0) {
+            long maxSize = Long.parseLong(Optional.ofNullable(System.getenv("JWT_CACHE_MAX_SIZE")).orElse("10000"));
+            decoder = new CachingReactiveJwtDecoder(decoder, JWT_TYPE, meterRegistry, Duration.ofMillis(cacheTtl), maxSize,
+                    "issuer", Optional.ofNullable(issuer).orElse(DEFAULT_ISSUER));
+        }
+        JwtReactiveAuthenticationManager manager = new JwtReactiveAuthenticationManager(decoder);
         manager.setJwtAuthenticationConverter(converter);
         return manager;
     }
@@ -101,7 +213,12 @@ public class CustomAuthenticationManagerResolver implements ReactiveAuthenticati
         if (opaqueWebClient != null)
             introspector = new SpringReactiveOpaqueTokenIntrospector(introspectionUri, opaqueWebClient);
         introspector.setAuthenticationConverter(new CustomOpaqueTokenAuthenticationConverter(roleClaim));
-        return new OpaqueTokenReactiveAuthenticationManager(introspector);
+        long cacheTtl = Long.parseLong(Optional.ofNullable(System.getenv("INTROSPECT_CACHE_TTL")).orElse("0"));
+        if (cacheTtl <= 0) return new OpaqueTokenReactiveAuthenticationManager(introspector);
+        long negativeTtl = Long.parseLong(Optional.ofNullable(System.getenv("INTROSPECT_CACHE_NEGATIVE_TTL")).orElse("5000"));
+        long maxSize = Long.parseLong(Optional.ofNullable(System.getenv("INTROSPECT_CACHE_MAX_SIZE")).orElse("10000"));
+        return new OpaqueTokenReactiveAuthenticationManager(new CachingOpaqueTokenIntrospector(introspector, meterRegistry,
+                Duration.ofMillis(cacheTtl), Duration.ofMillis(negativeTtl), maxSize));
     }
 
     private WebClient webClient(boolean opaque) {
@@ -4,17 +4,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
 import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimAccessor;
 import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionAuthenticatedPrincipal;
 import org.springframework.util.Assert;
-import org.springframework.util.StringUtils;
 import reactor.core.publisher.Mono;
 
 import java.util.Collection;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class CustomOpaqueTokenAuthenticationConverter implements Converter<OAuth2TokenIntrospectionClaimAccessor, Mono<? extends OAuth2AuthenticatedPrincipal>> {
 
@@ -32,19 +29,12 @@ public class CustomOpaqueTokenAuthenticationConverter implements Converter<OAuth
         LOG.info("role claim name '{}'", roleClaim);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public Mono<? extends OAuth2AuthenticatedPrincipal> convert(OAuth2TokenIntrospectionClaimAccessor source) {
         Map<String, Object> claims = source.getClaims();
         Object claimValue = claims.get(roleClaim);
         LOG.debug("role claim name '{}', {}", roleClaim, claimValue);
-        Collection<GrantedAuthority> roles;
-        if (claimValue instanceof Collection)
-            roles = ((Collection<String>) claimValue).parallelStream()
-                    .map(SimpleGrantedAuthority::new).collect(Collectors.toSet());
-        else
-            roles = StringUtils.commaDelimitedListToSet(String.valueOf(claimValue)).parallelStream()
-                    .map(SimpleGrantedAuthority::new).collect(Collectors.toSet());
+        Collection<GrantedAuthority> roles = GrantedAuthorities.fromClaim(claimValue);
         LOG.info("roles {}", roles);
         return Mono.just(new OAuth2IntrospectionAuthenticatedPrincipal(claims, roles));
     }
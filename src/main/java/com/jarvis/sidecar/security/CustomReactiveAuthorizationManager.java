@@ -0,0 +1,80 @@
+package com.jarvis.sidecar.security;
+
+import com.jarvis.sidecar.model.RouteDescriptor;
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.model.SecurityEntity;
+import com.jarvis.sidecar.service.RouteIndex;
+import com.jarvis.sidecar.service.SecurityResourceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthenticatedReactiveAuthorizationManager;
+import org.springframework.security.authorization.AuthorityReactiveAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public class CustomReactiveAuthorizationManager implements ReactiveAuthorizationManager<AuthorizationContext> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CustomReactiveAuthorizationManager.class);
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+    private static final ReactiveAuthorizationManager<AuthorizationContext> AUTHENTICATED = AuthenticatedReactiveAuthorizationManager.authenticated();
+    private static final RouteIndex DEFAULTS = defaults();
+
+    private final SecurityResourceService securityResource;
+    private final ReactiveAuthorizationManager<AuthorizationContext> admin;
+
+    public CustomReactiveAuthorizationManager(SecurityResourceService securityResource, String adminRole) {
+        this.securityResource = securityResource;
+        this.admin = StringUtils.hasText(adminRole) ? AuthorityReactiveAuthorizationManager.hasAuthority(adminRole) : AUTHENTICATED;
+        LOG.info("security config endpoint {} requires {}", SecurityResourceService.ADMIN_ENDPOINT, StringUtils.hasText(adminRole) ? "role " + adminRole : "authenticated");
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> check(Mono<Authentication> authentication, AuthorizationContext context) {
+        ServerWebExchange exchange = context.getExchange();
+        RouteDescriptor descriptor = securityResource.describe(exchange);
+        if (descriptor.isAdmin())
+            return admin.check(authentication, context);
+        if (securityResource.isEmpty(exchange))
+            return AUTHENTICATED.check(authentication, context);
+        Optional<RouteMatch> route = descriptor.getRoute();
+        if (route.isEmpty())
+            route = DEFAULTS.find(exchange.getRequest().getPath().value(), exchange.getRequest().getMethod().name());
+        return route.map(v -> check(v, authentication, context)).orElse(Mono.just(DENIED));
+    }
+
+    private Mono<AuthorizationDecision> check(RouteMatch route, Mono<Authentication> authentication, AuthorizationContext context) {
+        SecurityEntity entity = route.getEntity();
+        if (Boolean.TRUE.equals(entity.getDenyAll()))
+            return Mono.just(DENIED);
+        if (Boolean.TRUE.equals(entity.getPermitAll()))
+            return Mono.just(GRANTED);
+        if (Boolean.TRUE.equals(entity.getAuthenticated()))
+            return AUTHENTICATED.check(authentication, context);
+        return authentication.filter(Authentication::isAuthenticated)
+                .map(auth -> securityResource.hasAnyRole(context.getExchange(), route, auth.getAuthorities()) ? GRANTED : DENIED)
+                .defaultIfEmpty(DENIED);
+    }
+
+    private static RouteIndex defaults() {
+        SecurityEntity deny = new SecurityEntity();
+        deny.setDenyAll(true);
+        deny.setEndpoints(Set.of("/**"));
+        deny.setMethods(Set.of(HttpMethod.DELETE.name(), HttpMethod.PUT.name(), HttpMethod.PATCH.name(),
+                HttpMethod.HEAD.name(), HttpMethod.TRACE.name()));
+        SecurityEntity permit = new SecurityEntity();
+        permit.setPermitAll(true);
+        permit.setEndpoints(SecurityResourceService.SERVICE_EXCLUDE_PATHS);
+        return new RouteIndex(List.of(deny, permit));
+    }
+}
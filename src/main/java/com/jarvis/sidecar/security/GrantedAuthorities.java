@@ -0,0 +1,42 @@
+package com.jarvis.sidecar.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class GrantedAuthorities {
+
+    private static final int MAX_POOL_SIZE = 4096;
+    private static final Map<String, GrantedAuthority> POOL = new ConcurrentHashMap<>();
+
+    private GrantedAuthorities() {
+    }
+
+    public static GrantedAuthority of(String role) {
+        GrantedAuthority authority = POOL.get(role);
+        if (authority != null) return authority;
+        authority = new SimpleGrantedAuthority(role);
+        if (POOL.size() < MAX_POOL_SIZE) {
+            GrantedAuthority previous = POOL.putIfAbsent(role, authority);
+            if (previous != null) return previous;
+        }
+        return authority;
+    }
+
+    public static List<GrantedAuthority> fromClaim(Object claimValue) {
+        Collection<?> roles = claimValue instanceof Collection ? (Collection<?>) claimValue
+                : StringUtils.commaDelimitedListToSet(String.valueOf(claimValue));
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (Object role : roles) {
+            GrantedAuthority authority = of(String.valueOf(role));
+            if (!authorities.contains(authority)) authorities.add(authority);
+        }
+        return authorities;
+    }
+}
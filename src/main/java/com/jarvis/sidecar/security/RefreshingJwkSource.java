@@ -0,0 +1,174 @@
+package com.jarvis.sidecar.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class RefreshingJwkSource implements Function<SignedJWT, Flux<JWK>> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshingJwkSource.class);
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(10);
+
+    private final WebClient webClient;
+    private final String jwkSetUri;
+    private final long refreshInterval;
+    private final long maxStaleness;
+    private final long refetchInterval;
+    private final AtomicLong lastRefetch = new AtomicLong();
+    private final Timer refreshSuccess;
+    private final Timer refreshFailure;
+    private final Counter refetched;
+    private final Counter throttled;
+    private final MeterRegistry registry;
+    private final List<Meter> gauges;
+    private volatile Snapshot current;
+    private volatile long failedAt;
+    private volatile Disposable schedule;
+    private volatile boolean disposed;
+    private Mono<JWKSet> inflight;
+
+    public RefreshingJwkSource(WebClient webClient, String jwkSetUri, MeterRegistry registry,
+                               Duration refreshInterval, Duration maxStaleness, Duration refetchInterval) {
+        this.webClient = webClient;
+        this.jwkSetUri = jwkSetUri;
+        this.refreshInterval = refreshInterval.toMillis();
+        this.maxStaleness = maxStaleness.toMillis();
+        this.refetchInterval = refetchInterval.toMillis();
+        this.refreshSuccess = Timer.builder("sidecar.jwks.refresh").tag("uri", jwkSetUri).tag("outcome", "success").register(registry);
+        this.refreshFailure = Timer.builder("sidecar.jwks.refresh").tag("uri", jwkSetUri).tag("outcome", "failure").register(registry);
+        this.refetched = Counter.builder("sidecar.jwks.refetch").tag("uri", jwkSetUri).tag("outcome", "fetched").register(registry);
+        this.throttled = Counter.builder("sidecar.jwks.refetch").tag("uri", jwkSetUri).tag("outcome", "throttled").register(registry);
+        // a source that never loaded a key set has no staleness; the gauges go away with a disposed source
+        this.registry = registry;
+        this.gauges = List.of(
+                Gauge.builder("sidecar.jwks.staleness", this, source -> source.current == null ? Double.NaN : source.age() / 1000.0)
+                        .tag("uri", jwkSetUri).baseUnit("seconds").register(registry),
+                Gauge.builder("sidecar.jwks.keys", this, source -> source.current == null ? 0 : source.current.set.size())
+                        .tag("uri", jwkSetUri).register(registry));
+        LOG.info("jwk set {} refresh interval {}, max staleness {}, refetch interval {}",
+                jwkSetUri, refreshInterval, maxStaleness, refetchInterval);
+        refresh();
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKMatcher matcher = JWKMatcher.forJWSHeader(jwt.getHeader());
+        if (matcher == null) return Flux.empty();
+        Snapshot snapshot = current;
+        if (snapshot == null || age() > maxStaleness) {
+            String reason = snapshot == null ? "unable to fetch jwk set " + jwkSetUri
+                    : "jwk set " + jwkSetUri + " is stale for " + age() + "ms";
+            // an unreachable jwk set uri is tried once per refetch interval, not once per token
+            if (System.currentTimeMillis() - failedAt < refetchInterval) {
+                throttled.increment();
+                return Flux.error(new JwtException(reason + ", last fetch failed"));
+            }
+            return fetch().onErrorMap(ex -> new JwtException(reason, ex)).flatMapIterable(set -> select(set, matcher));
+        }
+        List<JWK> keys = select(snapshot.set, matcher);
+        if (!keys.isEmpty() || jwt.getHeader().getKeyID() == null) return Flux.fromIterable(keys);
+        long last = lastRefetch.get();
+        long now = System.currentTimeMillis();
+        if (now - last < refetchInterval || !lastRefetch.compareAndSet(last, now)) {
+            LOG.debug("throttle jwk set {} refetch for unknown kid '{}'", jwkSetUri, jwt.getHeader().getKeyID());
+            throttled.increment();
+            return Flux.empty();
+        }
+        LOG.info("refetch jwk set {} for unknown kid '{}'", jwkSetUri, jwt.getHeader().getKeyID());
+        refetched.increment();
+        return fetch().map(set -> select(set, matcher)).onErrorReturn(keys).flatMapIterable(Function.identity());
+    }
+
+    public void dispose() {
+        disposed = true;
+        if (schedule != null) schedule.dispose();
+        gauges.forEach(registry::remove);
+    }
+
+    private long age() {
+        Snapshot snapshot = current;
+        return snapshot == null ? 0 : System.currentTimeMillis() - snapshot.fetchedAt;
+    }
+
+    private void refresh() {
+        fetch().subscribe(set -> next(refreshInterval), ex -> next(Math.min(refreshInterval, refetchInterval)));
+    }
+
+    private void next(long delay) {
+        if (!disposed) schedule = Schedulers.parallel().schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized Mono<JWKSet> fetch() {
+        if (inflight == null) {
+            long start = System.nanoTime();
+            inflight = webClient.get().uri(jwkSetUri).retrieve().bodyToMono(String.class)
+                    .timeout(FETCH_TIMEOUT)
+                    .map(this::parse)
+                    .doOnNext(set -> {
+                        current = new Snapshot(set, System.currentTimeMillis());
+                        failedAt = 0;
+                        refreshSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        LOG.debug("fetched jwk set {}, {} keys", jwkSetUri, set.size());
+                    })
+                    .doOnError(ex -> {
+                        failedAt = System.currentTimeMillis();
+                        refreshFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        LOG.warn("unable to fetch jwk set {}, keep last known good of age {}ms, {}", jwkSetUri, age(), ex.getMessage());
+                    })
+                    .doFinally(signal -> complete())
+                    .cache();
+        }
+        return inflight;
+    }
+
+    private synchronized void complete() {
+        inflight = null;
+    }
+
+    private JWKSet parse(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException ex) {
+            throw new JwtException("invalid jwk set " + jwkSetUri + ", " + ex.getMessage(), ex);
+        }
+    }
+
+    private static List<JWK> select(JWKSet set, JWKMatcher matcher) {
+        List<JWK> keys = new JWKSelector(matcher).select(set);
+        return keys == null ? Collections.emptyList() : keys;
+    }
+
+    private static class Snapshot {
+
+        private final JWKSet set;
+        private final long fetchedAt;
+
+        Snapshot(JWKSet set, long fetchedAt) {
+            this.set = set;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
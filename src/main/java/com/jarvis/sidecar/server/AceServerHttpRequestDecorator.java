@@ -1,52 +1,32 @@
 package com.jarvis.sidecar.server;
 
-import io.netty.buffer.ByteBufAllocator;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.NettyDataBufferFactory;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 
-import java.nio.charset.StandardCharsets;
-
 public class AceServerHttpRequestDecorator extends ServerHttpRequestDecorator {
 
-    private final byte[] rawBody;
+    private final BodyCapture capture;
+    private final Runnable onComplete;
     private final ServerWebExchange exchange;
 
-    public AceServerHttpRequestDecorator(ServerWebExchange exchange, byte[] rawBody) {
+    public AceServerHttpRequestDecorator(ServerWebExchange exchange, BodyCapture capture, Runnable onComplete) {
         super(exchange.getRequest());
         this.exchange = exchange;
-        this.rawBody = rawBody;
-    }
-
-    @Override
-    public HttpHeaders getHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.putAll(super.getHeaders());
-        MediaType contentType = headers.getContentType();
-        if (MediaType.APPLICATION_JSON.isCompatibleWith(contentType) || MediaType.MULTIPART_FORM_DATA.isCompatibleWith(contentType))
-            return headers;
-        if (rawBody != null && rawBody.length > 0)
-            headers.setContentLength(rawBody.length);
-        else
-            headers.set(HttpHeaders.TRANSFER_ENCODING, "chunked");
-        return headers;
+        this.capture = capture;
+        this.onComplete = onComplete;
     }
 
     @Override
     public Flux<DataBuffer> getBody() {
-        if (rawBody == null || rawBody.length <= 0) return super.getBody();
-        return DataBufferUtils.read(new ByteArrayResource(rawBody),
-                new NettyDataBufferFactory(ByteBufAllocator.DEFAULT), rawBody.length);
+        Flux<DataBuffer> body = super.getBody();
+        if (capture != null) body = body.doOnNext(capture::append);
+        return body.doFinally(signal -> onComplete.run());
     }
 
     public String getBodyString() {
-        return new String(rawBody, StandardCharsets.UTF_8);
+        return capture == null ? "" : capture.finish();
     }
 
     public ServerWebExchange getExchange() {
@@ -1,7 +1,5 @@
 package com.jarvis.sidecar.server;
 
-import com.jarvis.sidecar.filter.LoggingFilter;
-import com.jarvis.sidecar.model.ServerContext;
 import org.reactivestreams.Publisher;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
@@ -10,37 +8,29 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Optional;
-
 public class AceServerHttpResponseDecorator extends ServerHttpResponseDecorator {
 
-    private final StringBuilder body = new StringBuilder();
+    private final BodyCapture capture;
     private final ServerWebExchange exchange;
 
-    public AceServerHttpResponseDecorator(ServerWebExchange exchange) {
+    public AceServerHttpResponseDecorator(ServerWebExchange exchange, BodyCapture capture) {
         super(exchange.getResponse());
         this.exchange = exchange;
+        this.capture = capture;
     }
 
     @Override
     public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
-        return super.writeWith(Flux.from(body).doOnNext(this::capture));
+        if (!MediaType.APPLICATION_JSON.isCompatibleWith(getHeaders().getContentType()))
+            return super.writeWith(body);
+        return super.writeWith(Flux.from(body).doOnNext(capture::append));
     }
 
     public String getBodyString() {
-        return body.toString();
+        return capture.finish();
     }
 
     public ServerWebExchange getExchange() {
         return exchange;
     }
-
-    private void capture(DataBuffer buffer) {
-        if (MediaType.APPLICATION_JSON.isCompatibleWith(getHeaders().getContentType())) {
-            this.body.append(buffer.toString(StandardCharsets.UTF_8));
-            this.exchange.getAttributes().put(LoggingFilter.RESPONSE_BODY_ATTR, body.toString());
-            Optional.ofNullable((ServerContext) exchange.getAttribute(LoggingFilter.SERVER_CONTEXT_ATTR)).ifPresent(v -> v.setResponseBody(body.toString()));
-        }
-    }
 }
@@ -32,13 +32,14 @@ public class AceServerWebExchangeDecorator extends ServerWebExchangeDecorator {
 
     private final ServerCodecConfigurer configurer;
     private final ServerHttpRequestDecorator request;
-    private final ServerHttpResponseDecorator response;
+    private final ServerHttpResponse response;
 
-    public AceServerWebExchangeDecorator(ServerWebExchange delegate, ServerCodecConfigurer configurer, byte[] bytes) {
+    public AceServerWebExchangeDecorator(ServerWebExchange delegate, ServerCodecConfigurer configurer, BodyCapture capture,
+                                         Runnable onRequestComplete, BodyCapture responseCapture) {
         super(delegate);
         this.configurer = configurer;
-        this.request = new AceServerHttpRequestDecorator(delegate, bytes);
-        this.response = new AceServerHttpResponseDecorator(delegate);
+        this.request = new AceServerHttpRequestDecorator(delegate, capture, onRequestComplete);
+        this.response = responseCapture == null ? delegate.getResponse() : new AceServerHttpResponseDecorator(delegate, responseCapture);
     }
 
     @Override
@@ -0,0 +1,77 @@
+package com.jarvis.sidecar.server;
+
+import com.jarvis.sidecar.service.BufferBudget;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class BodyCapture {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int limit;
+    private final BufferBudget budget;
+    private ByteBuf buffer;
+    private long size;
+    private String text;
+
+    public BodyCapture(int limit) {
+        this(limit, null);
+    }
+
+    public BodyCapture(int limit, BufferBudget budget) {
+        this.limit = limit;
+        this.budget = budget;
+    }
+
+    public synchronized void append(DataBuffer data) {
+        size += data.readableByteCount();
+        if (text != null || limit <= 0 || (buffer != null && buffer.readableBytes() >= limit)) return;
+        if (buffer == null) {
+            // the capture is only for logging, skip it rather than the request when the budget is spent
+            if (budget != null && !budget.tryAcquire(limit)) {
+                text = "";
+                return;
+            }
+            buffer = ByteBufAllocator.DEFAULT.buffer(Math.min(INITIAL_CAPACITY, limit), limit);
+        }
+        try (DataBuffer.ByteBufferIterator iterator = data.readableByteBuffers()) {
+            while (iterator.hasNext() && buffer.readableBytes() < limit) {
+                ByteBuffer source = iterator.next();
+                int length = Math.min(source.remaining(), limit - buffer.readableBytes());
+                buffer.writeBytes(source.slice().limit(length));
+            }
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized boolean isTruncated() {
+        return size > limit;
+    }
+
+    public synchronized void discard() {
+        release();
+        if (text == null) text = "";
+    }
+
+    public synchronized String finish() {
+        if (text == null) {
+            text = buffer == null ? "" : buffer.toString(StandardCharsets.UTF_8);
+            release();
+        }
+        return text;
+    }
+
+    private void release() {
+        if (buffer == null) return;
+        buffer.release();
+        buffer = null;
+        if (budget != null) budget.release(limit);
+    }
+}
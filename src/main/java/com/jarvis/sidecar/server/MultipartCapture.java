@@ -0,0 +1,183 @@
+package com.jarvis.sidecar.server;
+
+import com.jarvis.sidecar.util.JsonLogRewriter;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+public class MultipartCapture extends BodyCapture {
+
+    private static final int MAX_HEADER_SIZE = 8192;
+    private static final int MAX_PARTS = 64;
+    private static final String CONTENT_DISPOSITION = "content-disposition:";
+
+    private enum State {BOUNDARY, DELIMITER, HEADERS, BODY, DONE}
+
+    private final byte[] delimiter;
+    private final int fieldLimit;
+    private final Predicate<String> masked;
+    private final List<PartInfo> parts = new ArrayList<>();
+    private final byte[] headers = new byte[MAX_HEADER_SIZE];
+    private State state = State.BOUNDARY;
+    private int matched = 2;
+    private int headerLength;
+    private int lineBreaks;
+    private int delimiterTail;
+    private PartInfo part;
+
+    public MultipartCapture(String boundary, int fieldLimit, Predicate<String> masked) {
+        super(0);
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.fieldLimit = fieldLimit;
+        this.masked = masked;
+    }
+
+    public static MultipartCapture of(MediaType contentType, int fieldLimit, Predicate<String> masked) {
+        String boundary = contentType == null ? null : contentType.getParameter("boundary");
+        if (boundary == null || boundary.isEmpty()) return null;
+        if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\""))
+            boundary = boundary.substring(1, boundary.length() - 1);
+        return new MultipartCapture(boundary, fieldLimit, masked);
+    }
+
+    // scans the part boundaries and headers as the body streams through, file contents are only counted
+    @Override
+    public synchronized void append(DataBuffer data) {
+        super.append(data);
+        if (state == State.DONE) return;
+        try (DataBuffer.ByteBufferIterator iterator = data.readableByteBuffers()) {
+            while (iterator.hasNext() && state != State.DONE) {
+                ByteBuffer source = iterator.next();
+                for (int i = source.position(); i < source.limit() && state != State.DONE; i++)
+                    next(source.get(i));
+            }
+        }
+    }
+
+    private void next(byte b) {
+        switch (state) {
+            case BOUNDARY:
+            case BODY:
+                if (part != null) part.write(b);
+                if (b == delimiter[matched]) {
+                    if (++matched == delimiter.length) {
+                        if (part != null) part.close(delimiter.length);
+                        part = null;
+                        matched = 0;
+                        delimiterTail = 0;
+                        state = State.DELIMITER;
+                    }
+                } else {
+                    // the delimiter has a single CR at its start, so a mismatch can only restart on this byte
+                    matched = b == delimiter[0] ? 1 : 0;
+                }
+                break;
+            case DELIMITER:
+                if (b == '-' && ++delimiterTail == 2) {
+                    state = State.DONE;
+                } else if (b == '\n') {
+                    headerLength = 0;
+                    lineBreaks = 0;
+                    state = State.HEADERS;
+                }
+                break;
+            case HEADERS:
+                if (headerLength < headers.length) headers[headerLength++] = b;
+                lineBreaks = b == '\n' ? lineBreaks + 1 : b == '\r' ? lineBreaks : 0;
+                if (lineBreaks == 2) {
+                    part = parts.size() < MAX_PARTS ? header() : null;
+                    if (part != null) parts.add(part);
+                    state = State.BODY;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private PartInfo header() {
+        String text = new String(headers, 0, headerLength, StandardCharsets.UTF_8);
+        for (String line : text.split("\r?\n")) {
+            if (!line.regionMatches(true, 0, CONTENT_DISPOSITION, 0, CONTENT_DISPOSITION.length())) continue;
+            try {
+                ContentDisposition disposition = ContentDisposition.parse(line.substring(CONTENT_DISPOSITION.length()).trim());
+                String name = disposition.getName();
+                return new PartInfo(name, disposition.getFilename(), masked.test(name), fieldLimit, delimiter.length);
+            } catch (IllegalArgumentException ex) {
+                // a malformed header must not fail the upload, the part is only counted
+                break;
+            }
+        }
+        return new PartInfo(null, null, false, fieldLimit, delimiter.length);
+    }
+
+    public synchronized String getParameter() {
+        StringBuilder builder = new StringBuilder();
+        for (PartInfo info : parts) {
+            if (info.filename != null || info.name == null) continue;
+            if (builder.length() > 0) builder.append('&');
+            builder.append(info.name).append('=').append(info.value());
+        }
+        return builder.toString();
+    }
+
+    public synchronized String getFiles() {
+        StringBuilder builder = new StringBuilder();
+        for (PartInfo info : parts) {
+            if (info.filename == null) continue;
+            builder.append(builder.length() == 0 ? "[" : ", ").append(info.name).append('=').append(info.filename)
+                    .append('(').append(info.size()).append(')');
+        }
+        return builder.length() == 0 ? null : builder.append(']').toString();
+    }
+
+    private static class PartInfo {
+
+        private final String name;
+        private final String filename;
+        private final boolean masked;
+        private final int limit;
+        private final int capacity;
+        private byte[] value;
+        private int length;
+        private long size;
+
+        PartInfo(String name, String filename, boolean masked, int limit, int delimiterLength) {
+            this.name = name;
+            this.filename = filename;
+            this.masked = masked;
+            this.limit = limit;
+            this.capacity = limit + delimiterLength;
+        }
+
+        void write(byte b) {
+            size++;
+            if (filename != null || masked || length >= capacity) return;
+            if (value == null) value = new byte[Math.min(64, capacity)];
+            else if (length == value.length) value = Arrays.copyOf(value, Math.min(capacity, length * 2));
+            value[length++] = b;
+        }
+
+        void close(int delimiterLength) {
+            size -= delimiterLength;
+            length = (int) Math.min(length, size);
+        }
+
+        // a part that is still streaming reports the bytes seen so far
+        long size() {
+            return size;
+        }
+
+        String value() {
+            if (masked) return JsonLogRewriter.MASK;
+            return value == null ? "" : new String(value, 0, Math.min(length, limit), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.jarvis.sidecar.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jarvis.sidecar.condition.ConditionalOnEnvironment;
+import com.jarvis.sidecar.filter.LoggingFilter;
+import com.jarvis.sidecar.model.AccessLogRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+@Service
+@ConditionalOnEnvironment(key = "ENABLE_LOG", havingValue = "true")
+public class AccessLogService implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AccessLogService.class);
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger(LoggingFilter.class);
+    private static final String TRACE_ID_KEY = "traceId";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ObjectMapper mapper;
+    private final boolean json;
+    private final boolean sample;
+    private final int sampleRate;
+    private final int batchSize;
+    private final int highWatermark;
+    private final RingBuffer<AccessLogRecord> queue;
+    private final Writer writer;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter written;
+    private final Counter droppedFull;
+    private final Counter droppedSampled;
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    public AccessLogService(ObjectMapper mapper, MeterRegistry registry,
+                            @Value("${ACCESS_LOG_FORMAT:text}") String format,
+                            @Value("${ACCESS_LOG_OUTPUT:logger}") String output,
+                            @Value("${ACCESS_LOG_QUEUE_SIZE:8192}") int queueSize,
+                            @Value("${ACCESS_LOG_BATCH_SIZE:256}") int batchSize,
+                            @Value("${ACCESS_LOG_OVERFLOW:drop}") String overflow,
+                            @Value("${ACCESS_LOG_SAMPLE_RATE:10}") int sampleRate) {
+        this.mapper = mapper;
+        this.json = "json".equalsIgnoreCase(format);
+        this.sample = "sample".equalsIgnoreCase(overflow);
+        this.sampleRate = Math.max(1, sampleRate);
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new RingBuffer<>(Math.max(2, queueSize));
+        this.highWatermark = queue.capacity() / 4 * 3;
+        this.writer = "stdout".equalsIgnoreCase(output)
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024) : null;
+        Gauge.builder("sidecar.accesslog.queue.depth", queue, RingBuffer::size).register(registry);
+        this.written = Counter.builder("sidecar.accesslog.written").register(registry);
+        this.droppedFull = Counter.builder("sidecar.accesslog.dropped").tag("reason", "full").register(registry);
+        this.droppedSampled = Counter.builder("sidecar.accesslog.dropped").tag("reason", "sampled").register(registry);
+        this.consumer = new Thread(this::consume, "access-log-writer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+        LOG.info("access log format {}, output {}, queue size {}, batch size {}, overflow {}{}", json ? "json" : "text",
+                writer == null ? "logger" : "stdout", queue.capacity(), this.batchSize, sample ? "sample" : "drop",
+                sample ? " 1/" + this.sampleRate : "");
+    }
+
+    public void publish(AccessLogRecord record) {
+        if (sample && queue.size() >= highWatermark && sequence.incrementAndGet() % sampleRate != 0) {
+            droppedSampled.increment();
+            return;
+        }
+        if (!queue.offer(record))
+            droppedFull.increment();
+    }
+
+    private void consume() {
+        StringBuilder batch = new StringBuilder();
+        while (running || queue.size() > 0) {
+            int count = 0;
+            AccessLogRecord record;
+            while (count < batchSize && (record = queue.poll()) != null) {
+                try {
+                    write(batch, record);
+                    count++;
+                } catch (Exception ex) {
+                    LOG.warn("exception occurred while format access log {}", ex.getMessage());
+                }
+            }
+            if (count > 0) {
+                flush(batch);
+                written.increment(count);
+            } else if (running) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        flush(batch);
+    }
+
+    private void write(StringBuilder batch, AccessLogRecord record) throws JsonProcessingException {
+        String line = json ? mapper.writeValueAsString(record.toMap()) : record.toText();
+        if (writer == null) {
+            // keep the trace id of the request in the log pattern
+            MDC.put(TRACE_ID_KEY, record.getTraceId());
+            ACCESS_LOG.info(line);
+            MDC.remove(TRACE_ID_KEY);
+        } else
+            batch.append(line).append('\n');
+    }
+
+    private void flush(StringBuilder batch) {
+        if (writer == null || batch.length() == 0) return;
+        try {
+            writer.append(batch);
+            writer.flush();
+        } catch (IOException ex) {
+            LOG.warn("exception occurred while write access log {}", ex.getMessage());
+        }
+        batch.setLength(0);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    // bounded multi producer queue, see D. Vyukov's bounded MPMC queue; polled by the single writer thread
+    private static class RingBuffer<E> {
+
+        private final int mask;
+        private final AtomicReferenceArray<E> buffer;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        RingBuffer(int capacity) {
+            int size = Integer.highestOneBit(capacity - 1) << 1;
+            this.mask = size - 1;
+            this.buffer = new AtomicReferenceArray<>(size);
+            this.sequences = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++)
+                sequences.set(i, i);
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int size() {
+            return (int) Math.max(0, tail.get() - head);
+        }
+
+        boolean offer(E element) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) position & mask;
+                long diff = sequences.get(index) - position;
+                if (diff == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        buffer.lazySet(index, element);
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (diff < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        E poll() {
+            long position = head;
+            int index = (int) position & mask;
+            if (sequences.get(index) - (position + 1) < 0) return null;
+            E element = buffer.get(index);
+            buffer.lazySet(index, null);
+            sequences.set(index, position + mask + 1);
+            head = position + 1;
+            return element;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.jarvis.sidecar.service;
+
+import com.jarvis.sidecar.exception.ConcurrencyLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+    private static final int LONG_WINDOW = 600;
+    private static final int WINDOW_SIZE = 20;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private final AtomicReference<Window> window = new AtomicReference<>(new Window());
+    private volatile int limit;
+    private volatile double estimatedLimit;
+    private volatile double longRtt;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry registry,
+                                      @Value("${CONCURRENCY-LIMIT-MODE:off}") String mode,
+                                      @Value("${CONCURRENCY-LIMIT-INITIAL:20}") int initialLimit,
+                                      @Value("${CONCURRENCY-LIMIT-MIN:4}") int minLimit,
+                                      @Value("${CONCURRENCY-LIMIT-MAX:1000}") int maxLimit) {
+        this.enabled = "adaptive".equalsIgnoreCase(mode);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+        this.rejected = Counter.builder("sidecar.concurrency.limit.rejected").register(registry);
+        if (enabled) {
+            Gauge.builder("sidecar.concurrency.limit", this, v -> v.limit).register(registry);
+            Gauge.builder("sidecar.concurrency.in.flight", inFlight, AtomicInteger::get).register(registry);
+            LOG.info("adaptive concurrency limit initial {}, min {}, max {}", initialLimit, minLimit, maxLimit);
+        }
+    }
+
+    public <T> Mono<T> execute(Mono<T> call) {
+        if (!enabled) return call;
+        return Mono.defer(() -> {
+            int current = acquire();
+            if (current < 0) {
+                rejected.increment();
+                return Mono.error(new ConcurrencyLimitException("concurrency limit " + limit + " reached", null, false, false));
+            }
+            long start = System.nanoTime();
+            boolean[] dropped = {false};
+            // the proxy translates upstream errors, a connection failure is still the cause of the translated one
+            return call.doOnError(ex -> dropped[0] = ExceptionUtils.indexOfType(ex, WebClientRequestException.class) >= 0)
+                    .doFinally(signal -> {
+                        inFlight.decrementAndGet();
+                        if (signal != SignalType.CANCEL)
+                            record(System.nanoTime() - start, current, dropped[0]);
+                    });
+        });
+    }
+
+    private int acquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) return -1;
+            if (inFlight.compareAndSet(current, current + 1)) return current + 1;
+        }
+    }
+
+    // completions only add to the current window, the thread that closes a full window (or one with a drop) recomputes the limit
+    private void record(long rtt, int inFlightAtStart, boolean dropped) {
+        Window current = window.get();
+        current.add(rtt, inFlightAtStart, dropped);
+        if ((dropped || current.count.sum() >= WINDOW_SIZE) && current.close()) {
+            update(current);
+            window.set(new Window());
+        }
+    }
+
+    private void update(Window closed) {
+        long count = closed.count.sum();
+        if (count == 0) return;
+        double rtt = (double) closed.rttSum.sum() / count;
+        double newLimit;
+        if (closed.dropped) {
+            newLimit = estimatedLimit * BACKOFF;
+        } else {
+            longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) * Math.min(1.0, (double) count / LONG_WINDOW);
+            if (longRtt / rtt > 2) longRtt *= 0.95;
+            if (closed.maxInFlight.get() < estimatedLimit / 2) return;
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rtt));
+            newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        }
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        int rounded = (int) estimatedLimit;
+        if (rounded != limit) {
+            LOG.debug("concurrency limit {} -> {}, rtt {}ns, long rtt {}ns", limit, rounded, (long) rtt, (long) longRtt);
+            limit = rounded;
+        }
+    }
+
+    private static class Window {
+
+        private final LongAdder rttSum = new LongAdder();
+        private final LongAdder count = new LongAdder();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean dropped;
+
+        void add(long rtt, int inFlight, boolean dropped) {
+            rttSum.add(rtt);
+            count.increment();
+            if (inFlight > maxInFlight.get()) maxInFlight.accumulateAndGet(inFlight, Math::max);
+            if (dropped) this.dropped = true;
+        }
+
+        boolean close() {
+            return closed.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.jarvis.sidecar.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class BufferBudget {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BufferBudget.class);
+
+    private final long limit;
+    private final long bufferedReserve;
+    private final AtomicLong used = new AtomicLong();
+    private final Counter rejected;
+
+    public BufferBudget(MeterRegistry registry,
+                        @Value("${BUFFER-BUDGET:536870912}") long limit,
+                        @Value("${BUFFER-BUDGET-RESERVE:262144}") long bufferedReserve) {
+        this.limit = limit;
+        this.bufferedReserve = bufferedReserve;
+        this.rejected = Counter.builder("sidecar.buffer.budget.rejected").register(registry);
+        Gauge.builder("sidecar.buffer.budget.used", used, AtomicLong::get).baseUnit("bytes").register(registry);
+        Gauge.builder("sidecar.buffer.budget.limit", this, v -> v.limit).baseUnit("bytes").register(registry);
+        LOG.info("buffer budget {} bytes, buffered exchange reserve {} bytes", limit, bufferedReserve);
+    }
+
+    public long getBufferedReserve() {
+        return bufferedReserve;
+    }
+
+    public boolean tryAcquire(long bytes) {
+        while (true) {
+            long current = used.get();
+            if (limit > 0 && current + bytes > limit) {
+                rejected.increment();
+                return false;
+            }
+            if (used.compareAndSet(current, current + bytes)) return true;
+        }
+    }
+
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+}
@@ -0,0 +1,123 @@
+package com.jarvis.sidecar.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jarvis.sidecar.model.HedgePolicy;
+import com.jarvis.sidecar.model.SecurityEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+@Service
+public class HedgingService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HedgingService.class);
+    private static final int WINDOW_SIZE = 256;
+    private static final int RECOMPUTE_EVERY = 32;
+    private static final long TOKEN = 1000;
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private final Cache<List<Set<String>>, RouteStats> routes;
+    private final Counter fired;
+    private final Counter won;
+
+    public HedgingService(MeterRegistry registry,
+                          @Value("${HEDGE-MAX-ROUTES:10000}") long maxRoutes,
+                          @Value("${HEDGE-IDLE-EVICT:600000}") long idleEvict) {
+        // routes dropped by a reload stop being read, their stats expire instead of piling up
+        this.routes = Caffeine.newBuilder()
+                .maximumSize(maxRoutes)
+                .expireAfterAccess(Duration.ofMillis(idleEvict))
+                .build();
+        this.fired = Counter.builder("sidecar.hedge.fired").register(registry);
+        this.won = Counter.builder("sidecar.hedge.won").register(registry);
+    }
+
+    public boolean supports(ServerHttpRequest request, SecurityEntity route) {
+        return (request.getMethod() == HttpMethod.GET || request.getMethod() == HttpMethod.HEAD)
+                && route.getHedge() != null && route.getHedge().isEnabled();
+    }
+
+    public <T> Mono<T> hedge(SecurityEntity route, Supplier<Mono<T>> attempt) {
+        HedgePolicy policy = route.getHedge();
+        RouteStats stats = routes.get(key(route), k -> new RouteStats());
+        return Mono.defer(() -> {
+            stats.deposit(policy.getMaxPercent());
+            Mono<T> primary = timed(stats, attempt);
+            Mono<T> hedged = Mono.delay(Duration.ofMillis(stats.delay(policy)))
+                    .then(Mono.defer(() -> {
+                        if (!stats.withdraw()) return Mono.<T>never();
+                        LOG.debug("fire hedge request for route {}", route.getId());
+                        fired.increment();
+                        return timed(stats, attempt).doOnNext(v -> won.increment());
+                    }))
+                    .onErrorResume(ex -> Mono.never());
+            return Mono.firstWithSignal(primary, hedged);
+        });
+    }
+
+    // rule ids are regenerated on every config reload, so the latency window follows the endpoints and methods
+    private static List<Set<String>> key(SecurityEntity route) {
+        Set<String> methods = new HashSet<>();
+        for (String method : route.getMethods()) methods.add(method.toUpperCase(Locale.ROOT));
+        return List.of(new HashSet<>(route.getEndpoints()), methods);
+    }
+
+    private <T> Mono<T> timed(RouteStats stats, Supplier<Mono<T>> attempt) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return attempt.get().doOnNext(v -> stats.record(System.nanoTime() - start));
+        });
+    }
+
+    private static class RouteStats {
+
+        private final AtomicLongArray window = new AtomicLongArray(WINDOW_SIZE);
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong tokens = new AtomicLong();
+        private volatile long[] sorted = new long[0];
+
+        void record(long nanos) {
+            int index = count.getAndIncrement();
+            window.set(Math.floorMod(index, WINDOW_SIZE), nanos);
+            if ((index + 1) % RECOMPUTE_EVERY == 0) {
+                int size = Math.min(index + 1, WINDOW_SIZE);
+                long[] copy = new long[size];
+                for (int i = 0; i < size; i++) copy[i] = window.get(i);
+                Arrays.sort(copy);
+                sorted = copy;
+            }
+        }
+
+        long delay(HedgePolicy policy) {
+            long[] snapshot = sorted;
+            if (policy.getPercentile() <= 0 || snapshot.length < RECOMPUTE_EVERY)
+                return policy.getDelay();
+            int index = (int) Math.min(snapshot.length - 1, Math.ceil(policy.getPercentile() * snapshot.length) - 1);
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(snapshot[Math.max(0, index)]));
+        }
+
+        void deposit(int percent) {
+            long amount = TOKEN * percent / 100;
+            tokens.getAndUpdate(v -> Math.min(MAX_TOKENS, v + amount));
+        }
+
+        boolean withdraw() {
+            return tokens.getAndUpdate(v -> v >= TOKEN ? v - TOKEN : v) >= TOKEN;
+        }
+    }
+}
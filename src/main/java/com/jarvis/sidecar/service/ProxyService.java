@@ -1,20 +1,31 @@
 package com.jarvis.sidecar.service;
 
+import com.jarvis.sidecar.exception.BufferBudgetExceededException;
 import com.jarvis.sidecar.exception.ProxyFailedException;
 import com.jarvis.sidecar.exception.ProxyResponseFailedException;
+import com.jarvis.sidecar.exception.QuotaExceededException;
+import com.jarvis.sidecar.exception.RequestBodyTooLargeException;
+import com.jarvis.sidecar.model.CachePolicy;
+import com.jarvis.sidecar.model.QuotaDecision;
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.model.SecurityEntity;
+import com.jarvis.sidecar.model.UpstreamEndpoint;
 import com.jarvis.sidecar.util.ContextUtil;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.ratelimiter.RequestNotPermitted;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
@@ -25,52 +36,145 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
 public class ProxyService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ProxyService.class);
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "te", "trailer", "transfer-encoding", "upgrade");
 
     @Value("${PC-SCHEMA:http}")
     private String scheme;
-    @Value("${PC-HOST:localhost}")
-    private String host;
-    @Value("${PC-PORT:80}")
-    private String port;
-
-    @RateLimiter(name = "sidecar", fallbackMethod = "rateLimit")
-    @CircuitBreaker(name = "sidecar", fallbackMethod = "circuitBreaker")
-    public Mono<ResponseEntity<String>> proxy(ServerHttpRequest request) {
-        if (requiredBody(request.getMethod())) {
-            return WebClient.create()
-                    .method(request.getMethod())
-                    .uri(buildUrl(request))
-                    .headers(headers -> headers.addAll(extractHeader(request.getHeaders())))
-                    .body(BodyInserters.fromDataBuffers(request.getBody()))
-                    .retrieve().toEntity(String.class)
-                    .onErrorMap(Exception.class, ex -> new ProxyFailedException(ex.getMessage()))
-                    .onErrorMap(WebClientResponseException.class, ex ->
-                            new ProxyResponseFailedException(ex.getStatusCode(), ex.getMessage(), ex.getResponseBodyAsString()));
+
+    @Autowired
+    @Qualifier("upstreamWebClient")
+    private WebClient webClient;
+
+    @Autowired
+    private UpstreamLoadBalancer loadBalancer;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private SecurityResourceService securityResource;
+
+    @Autowired
+    private ResponseCacheService responseCache;
+
+    @Autowired
+    private RequestCoalescingService coalescing;
+
+    @Autowired
+    private HedgingService hedging;
+
+    @Autowired
+    private ResilienceService resilience;
+
+    @Autowired
+    private QuotaService quota;
+
+    @Autowired
+    private BufferBudget budget;
+
+    public Mono<ResponseEntity<String>> proxy(ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        Optional<RouteMatch> route = securityResource.findRoute(exchange);
+        return quota.acquire().flatMap(decision -> (decision.isAllowed()
+                ? resilience.execute(route, () -> load(request, route), ex -> rateLimit(request, ex), ex -> unavailable(request, ex))
+                : rateLimit(request, quotaExceeded(decision)))
+                .map(entity -> withQuota(entity, decision)));
+    }
+
+    public Mono<Void> stream(ServerWebExchange exchange) {
+        Optional<RouteMatch> route = securityResource.findRoute(exchange);
+        return quota.acquire().flatMap(decision -> {
+            exchange.getResponse().getHeaders().addAll(decision.headers());
+            if (!decision.isAllowed())
+                return streamRateLimit(exchange, quotaExceeded(decision));
+            return resilience.execute(route, () -> relay(exchange),
+                    ex -> streamRateLimit(exchange, ex), ex -> streamCircuitBreaker(exchange, ex));
+        });
+    }
+
+    private Mono<ResponseEntity<String>> load(ServerHttpRequest request, Optional<RouteMatch> route) {
+        Optional<SecurityEntity> entity = route.map(RouteMatch::getEntity);
+        Supplier<Mono<ResponseEntity<String>>> fetch = entity.isPresent() && hedging.supports(request, entity.get())
+                ? () -> hedging.hedge(entity.get(), () -> fetch(request)) : () -> fetch(request);
+        Supplier<Mono<ResponseEntity<String>>> loader = fetch;
+        if (coalescing.supports(request) && entity.map(SecurityEntity::getCoalesce).orElse(false))
+            loader = () -> coalescing.coalesce(request, fetch);
+        Optional<CachePolicy> cachePolicy = responseCache.policy(request, route);
+        if (cachePolicy.isPresent()) {
+            Supplier<Mono<ResponseEntity<String>>> load = loader;
+            return responseCache.get(request, cachePolicy.get(), load, () -> resilience.protect(route, load));
         }
-        return WebClient.create()
+        return loader.get();
+    }
+
+    private Mono<Void> relay(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        return concurrencyLimiter.execute(translateError(loadBalancer.execute(endpoint -> forward(exchange.getRequest(), endpoint).exchangeToMono(upstream -> {
+            if (upstream.statusCode().isError())
+                return upstream.createException().flatMap(Mono::error);
+            response.setStatusCode(upstream.statusCode());
+            upstream.headers().asHttpHeaders().forEach((name, values) -> {
+                if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase()))
+                    response.getHeaders().addAll(name, values);
+            });
+            Flux<DataBuffer> body = upstream.bodyToFlux(DataBuffer.class);
+            if (MediaType.TEXT_EVENT_STREAM.isCompatibleWith(response.getHeaders().getContentType()))
+                return response.writeAndFlushWith(body.map(Mono::just));
+            return response.writeWith(body);
+        }))));
+    }
+
+    // only an upstream call buffers its response, up to the codec in-memory limit; cache hits and coalesced waiters do not
+    private Mono<ResponseEntity<String>> fetch(ServerHttpRequest request) {
+        long reserve = budget.getBufferedReserve();
+        return Mono.defer(() -> {
+            if (!budget.tryAcquire(reserve))
+                return Mono.error(new BufferBudgetExceededException("buffer budget exhausted", null, false, false));
+            return concurrencyLimiter.execute(translateError(loadBalancer.execute(endpoint ->
+                    forward(request, endpoint).retrieve().toEntity(String.class))))
+                    .doFinally(signal -> budget.release(reserve));
+        });
+    }
+
+    private WebClient.RequestHeadersSpec<?> forward(ServerHttpRequest request, UpstreamEndpoint endpoint) {
+        WebClient.RequestBodySpec spec = webClient
                 .method(request.getMethod())
-                .uri(buildUrl(request))
-                .headers(headers -> headers.addAll(extractHeader(request.getHeaders())))
-                .retrieve().toEntity(String.class)
-                .onErrorMap(Exception.class, ex -> new ProxyFailedException(ex.getMessage()))
+                .uri(buildUrl(request, endpoint))
+                .headers(headers -> headers.addAll(extractHeader(request.getHeaders())));
+        if (requiredBody(request.getMethod()))
+            spec.body(BodyInserters.fromDataBuffers(request.getBody()));
+        return spec;
+    }
+
+    private <T> Mono<T> translateError(Mono<T> mono) {
+        return mono.onErrorMap(Exception.class, ex -> {
+                    RequestBodyTooLargeException tooLarge = ExceptionUtils.throwableOfType(ex, RequestBodyTooLargeException.class);
+                    return tooLarge != null ? tooLarge : new ProxyFailedException(ex.getMessage(), ex);
+                })
                 .onErrorMap(WebClientResponseException.class, ex ->
                         new ProxyResponseFailedException(ex.getStatusCode(), ex.getMessage(), ex.getResponseBodyAsString()));
     }
 
-    private URI buildUrl(ServerHttpRequest request) {
+    private URI buildUrl(ServerHttpRequest request, UpstreamEndpoint endpoint) {
         URI uri = UriComponentsBuilder.newInstance()
-                .scheme(scheme).host(host).port(port)
+                .scheme(scheme).host(endpoint.getHost()).port(endpoint.getPort())
                 .path(request.getPath().toString())
                 .queryParams(request.getQueryParams())
                 .fragment(request.getURI().getFragment())
@@ -97,29 +201,83 @@ public class ProxyService {
         return headers;
     }
 
+    private ResponseEntity<String> withQuota(ResponseEntity<String> entity, QuotaDecision decision) {
+        if (decision == QuotaDecision.UNLIMITED) return entity;
+        return ResponseEntity.status(entity.getStatusCode())
+                .headers(entity.getHeaders())
+                .headers(headers -> headers.addAll(decision.headers()))
+                .body(entity.getBody());
+    }
+
+    private QuotaExceededException quotaExceeded(QuotaDecision decision) {
+        return new QuotaExceededException("client '" + decision.getClient() + "' exceeded quota tier '" + decision.getTier() + "'");
+    }
+
     private boolean requiredBody(HttpMethod method) {
         return method == HttpMethod.DELETE || method == HttpMethod.POST || method == HttpMethod.PUT;
     }
 
-    private Mono<ResponseEntity<String>> rateLimit(ServerHttpRequest request, RequestNotPermitted requestNotPermitted) {
+    private Mono<ResponseEntity<String>> rateLimit(ServerHttpRequest request, Throwable requestNotPermitted) {
         LOG.warn("reached API request limitation '{}', {}", request.getPath().value(), requestNotPermitted.getMessage());
+        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(rateLimitBody()));
+    }
+
+    private Mono<ResponseEntity<String>> circuitBreaker(ServerHttpRequest request, Throwable ex) {
+        LOG.warn("'{}', {}", request.getPath().value(), ex.getMessage());
+        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(unavailableBody()));
+    }
+
+    private Mono<ResponseEntity<String>> unavailable(ServerHttpRequest request, Throwable ex) {
+        if (!(ex instanceof BufferBudgetExceededException)) return circuitBreaker(request, ex);
+        LOG.warn("shed request '{}', {}", request.getPath().value(), ex.getMessage());
+        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(busyBody()));
+    }
+
+    private Mono<Void> streamRateLimit(ServerWebExchange exchange, Throwable requestNotPermitted) {
+        LOG.warn("reached API request limitation '{}', {}", exchange.getRequest().getPath().value(), requestNotPermitted.getMessage());
+        return reject(exchange.getResponse(), HttpStatus.TOO_MANY_REQUESTS, rateLimitBody(), requestNotPermitted);
+    }
+
+    private Mono<Void> streamCircuitBreaker(ServerWebExchange exchange, Throwable ex) {
+        LOG.warn("'{}', {}", exchange.getRequest().getPath().value(), ex.getMessage());
+        return reject(exchange.getResponse(), HttpStatus.SERVICE_UNAVAILABLE, unavailableBody(), ex);
+    }
+
+    private Mono<Void> reject(ServerHttpResponse response, HttpStatus status, String body, Throwable ex) {
+        if (response.isCommitted()) return Mono.error(ex);
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        DataBuffer buffer = response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(buffer));
+    }
+
+    private String rateLimitBody() {
         String serviceId = Optional.ofNullable(System.getenv("SERVICE_ID")).orElse(ContextUtil.getAppName());
         JSONObject json = new JSONObject();
         json.put("trace_id", ContextUtil.getTraceId());
         json.put("result", false);
         json.put("result_code", String.valueOf(HttpStatus.TOO_MANY_REQUESTS.value()));
         json.put("result_message", "you have reached your API request limitation, " + serviceId);
-        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(json.toString()));
+        return json.toString();
     }
 
-    private Mono<ResponseEntity<String>> circuitBreaker(ServerHttpRequest request, Throwable ex) {
-        LOG.warn("'{}', {}", request.getPath().value(), ex.getMessage());
+    private String busyBody() {
+        String serviceId = Optional.ofNullable(System.getenv("SERVICE_ID")).orElse(ContextUtil.getAppName());
+        JSONObject json = new JSONObject();
+        json.put("trace_id", ContextUtil.getTraceId());
+        json.put("result", false);
+        json.put("result_code", String.valueOf(HttpStatus.SERVICE_UNAVAILABLE.value()));
+        json.put("result_message", "too many requests in flight, try again later, " + serviceId);
+        return json.toString();
+    }
+
+    private String unavailableBody() {
         String serviceId = Optional.ofNullable(System.getenv("SERVICE_ID")).orElse(ContextUtil.getAppName());
         JSONObject json = new JSONObject();
         json.put("trace_id", ContextUtil.getTraceId());
         json.put("result", false);
         json.put("result_code", String.valueOf(HttpStatus.SERVICE_UNAVAILABLE.value()));
         json.put("result_message", "service " + serviceId + " unavailable");
-        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(json.toString()));
+        return json.toString();
     }
 }
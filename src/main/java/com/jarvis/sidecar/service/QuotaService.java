@@ -0,0 +1,159 @@
+package com.jarvis.sidecar.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jarvis.sidecar.model.QuotaDecision;
+import com.jarvis.sidecar.model.QuotaTier;
+import com.jarvis.sidecar.util.ContextUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class QuotaService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QuotaService.class);
+    private static final String CONFIG_ENV = "QUOTA_CONFIG";
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<QuotaTier> tiers;
+    private final QuotaTier defaultTier;
+    private final Cache<String, TokenBucket> buckets;
+    private final Map<String, Counter> rejected = new HashMap<>();
+
+    public QuotaService(ObjectMapper mapper, MeterRegistry registry,
+                        @Value("${QUOTA-DEFAULT-CAPACITY:0}") long defaultCapacity,
+                        @Value("${QUOTA-DEFAULT-REFILL-PER-SECOND:0}") double defaultRefill,
+                        @Value("${QUOTA-MAX-CLIENTS:100000}") long maxClients,
+                        @Value("${QUOTA-IDLE-EVICT:600000}") long idleEvict) {
+        this.tiers = loadQuotaTier(mapper);
+        this.defaultTier = defaultCapacity > 0 && defaultRefill > 0 ? new QuotaTier("default", defaultCapacity, defaultRefill) : null;
+        for (QuotaTier tier : tiers)
+            rejected.put(tier.getName(), Counter.builder("sidecar.quota.rejected").tag("tier", tier.getName()).register(registry));
+        if (defaultTier != null)
+            rejected.put(defaultTier.getName(), Counter.builder("sidecar.quota.rejected").tag("tier", defaultTier.getName()).register(registry));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofMillis(idleEvict))
+                .build();
+        Gauge.builder("sidecar.quota.buckets", buckets, Cache::estimatedSize).register(registry);
+        if (isEnabled())
+            LOG.info("client quota tiers {}, default {}, max clients {}, idle evict {}ms", tiers, defaultTier, maxClients, idleEvict);
+    }
+
+    public boolean isEnabled() {
+        return defaultTier != null || !tiers.isEmpty();
+    }
+
+    public Mono<QuotaDecision> acquire() {
+        if (!isEnabled()) return Mono.just(QuotaDecision.UNLIMITED);
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(this::acquire)
+                .defaultIfEmpty(QuotaDecision.UNLIMITED);
+    }
+
+    private QuotaDecision acquire(Authentication auth) {
+        String client = client(ContextUtil.getTokenAttributes(auth));
+        if (client == null) return QuotaDecision.UNLIMITED;
+        QuotaTier tier = tier(client, auth);
+        if (tier == null) return QuotaDecision.UNLIMITED;
+        TokenBucket bucket = buckets.get(tier.getName() + "|" + client, k -> new TokenBucket(tier));
+        QuotaDecision decision = bucket.tryAcquire(client, tier, System.nanoTime());
+        if (!decision.isAllowed()) {
+            LOG.debug("client '{}' exceeded quota tier '{}'", client, tier.getName());
+            rejected.get(tier.getName()).increment();
+        }
+        return decision;
+    }
+
+    private QuotaTier tier(String client, Authentication auth) {
+        for (QuotaTier tier : tiers) {
+            if (tier.getClients().contains(client)) return tier;
+        }
+        for (QuotaTier tier : tiers) {
+            if (tier.getRoles().isEmpty()) continue;
+            for (GrantedAuthority authority : auth.getAuthorities()) {
+                if (tier.getRoles().contains(authority.getAuthority())) return tier;
+            }
+        }
+        return defaultTier;
+    }
+
+    private static String client(Map<String, Object> attributes) {
+        Object client = attributes.get("client_id");
+        if (client == null) client = attributes.get("aud");
+        if (client instanceof Collection)
+            client = ((Collection<?>) client).stream().findFirst().orElse(null);
+        return client == null ? null : String.valueOf(client);
+    }
+
+    private List<QuotaTier> loadQuotaTier(ObjectMapper mapper) {
+        try {
+            String configPath = System.getenv(CONFIG_ENV);
+            if (StringUtils.isEmpty(configPath)) return Collections.emptyList();
+            LOG.info("quota config {}={}", CONFIG_ENV, configPath);
+            File file = new File(configPath);
+            if (!file.exists() || file.isDirectory())
+                throw new FileNotFoundException("file '" + configPath + "' not exist");
+            List<QuotaTier> list = mapper.readValue(new FileInputStream(file), new TypeReference<>() {
+            });
+            for (QuotaTier tier : list) {
+                if (StringUtils.isEmpty(tier.getName()) || tier.getCapacity() <= 0 || tier.getRefillPerSecond() <= 0)
+                    throw new IllegalArgumentException("invalid quota tier " + tier);
+            }
+            return list;
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static class TokenBucket {
+
+        private final long interval;
+        private final long burst;
+        private final AtomicLong theoreticalArrival;
+
+        TokenBucket(QuotaTier tier) {
+            this.interval = Math.max(1, (long) (SECOND / tier.getRefillPerSecond()));
+            this.burst = tier.getCapacity() * interval;
+            this.theoreticalArrival = new AtomicLong(System.nanoTime());
+        }
+
+        QuotaDecision tryAcquire(String client, QuotaTier tier, long now) {
+            while (true) {
+                long current = theoreticalArrival.get();
+                long next = Math.max(current, now) + interval;
+                long backlog = next - now;
+                if (backlog > burst)
+                    return new QuotaDecision(false, client, tier.getName(), tier.getCapacity(), 0, seconds(backlog - burst));
+                if (theoreticalArrival.compareAndSet(current, next))
+                    return new QuotaDecision(true, client, tier.getName(), tier.getCapacity(), (burst - backlog) / interval, seconds(backlog));
+            }
+        }
+
+        private static long seconds(long nanos) {
+            return (nanos + SECOND - 1) / SECOND;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.jarvis.sidecar.service;
+
+import com.jarvis.sidecar.util.TokenDigest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+@Service
+public class RequestCoalescingService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestCoalescingService.class);
+
+    private final Map<String, Mono<ResponseEntity<String>>> inFlight = new ConcurrentHashMap<>();
+    private final List<String> identityHeaders = new ArrayList<>();
+    private final int maxInFlight;
+    private final Counter coalesced;
+
+    public RequestCoalescingService(MeterRegistry registry,
+                                    @Value("${COALESCE-MAX-IN-FLIGHT:1000}") int maxInFlight,
+                                    @Value("${COALESCE-IDENTITY-HEADERS:authorization,cookie,accept,accept-encoding,accept-language}") String identityHeaders) {
+        this.maxInFlight = maxInFlight;
+        for (String header : StringUtils.commaDelimitedListToSet(identityHeaders))
+            this.identityHeaders.add(header.trim().toLowerCase());
+        this.coalesced = Counter.builder("sidecar.upstream.coalesced").register(registry);
+        Gauge.builder("sidecar.upstream.coalesce.in.flight", inFlight, Map::size).register(registry);
+        LOG.info("request coalescing max in flight {}, identity headers {}", maxInFlight, this.identityHeaders);
+    }
+
+    public boolean supports(ServerHttpRequest request) {
+        return request.getMethod() == HttpMethod.GET || request.getMethod() == HttpMethod.HEAD;
+    }
+
+    public Mono<ResponseEntity<String>> coalesce(ServerHttpRequest request, Supplier<Mono<ResponseEntity<String>>> loader) {
+        return Mono.defer(() -> {
+            if (inFlight.size() >= maxInFlight) return loader.get();
+            String key = key(request);
+            AtomicReference<Mono<ResponseEntity<String>>> self = new AtomicReference<>();
+            Mono<ResponseEntity<String>> created = loader.get()
+                    .doFinally(signal -> inFlight.remove(key, self.get()))
+                    .cache();
+            self.set(created);
+            Mono<ResponseEntity<String>> existing = inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                LOG.debug("coalesce request {} '{}'", request.getMethod(), request.getURI().getRawPath());
+                coalesced.increment();
+                return existing.map(this::copy);
+            }
+            return created.map(this::copy);
+        });
+    }
+
+    private ResponseEntity<String> copy(ResponseEntity<String> entity) {
+        return new ResponseEntity<>(entity.getBody(), new HttpHeaders(entity.getHeaders()), entity.getStatusCode());
+    }
+
+    private String key(ServerHttpRequest request) {
+        StringBuilder key = new StringBuilder(request.getMethod().name()).append(' ').append(request.getURI().getRawPath());
+        if (request.getURI().getRawQuery() != null)
+            key.append('?').append(request.getURI().getRawQuery());
+        // credentials in the identity headers only enter the key as a digest
+        StringBuilder identity = new StringBuilder();
+        HttpHeaders headers = request.getHeaders();
+        for (String header : identityHeaders)
+            identity.append(header).append('=').append(String.join(",", headers.getOrEmpty(header))).append('\n');
+        return key.append('|').append(TokenDigest.sha256(identity.toString())).toString();
+    }
+}
@@ -0,0 +1,177 @@
+package com.jarvis.sidecar.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.jarvis.sidecar.exception.ConcurrencyLimitException;
+import com.jarvis.sidecar.exception.RequestBodyTooLargeException;
+import com.jarvis.sidecar.model.ResiliencePolicy;
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.util.ContextUtil;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.ratelimiter.operator.RateLimiterOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Service
+public class ResilienceService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResilienceService.class);
+    private static final String DEFAULT_INSTANCE = "sidecar";
+
+    private final RateLimiterRegistry rateLimiterRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final RateLimiterConfig defaultRateLimiter;
+    private final CircuitBreakerConfig defaultCircuitBreaker;
+    private final int defaultMaxConcurrentCalls;
+    private final Instances defaultInstances;
+    private final Cache<String, Instances> instances;
+
+    public ResilienceService(RateLimiterRegistry rateLimiterRegistry, CircuitBreakerRegistry circuitBreakerRegistry,
+                             BulkheadRegistry bulkheadRegistry,
+                             @Value("${RESILIENCE-MAX-INSTANCES:10000}") long maxInstances,
+                             @Value("${RESILIENCE-IDLE-EVICT:600000}") long idleEvict,
+                             @Value("${BULKHEAD-MAX-CONCURRENT-CALLS:0}") int defaultMaxConcurrentCalls) {
+        this.rateLimiterRegistry = rateLimiterRegistry;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.defaultMaxConcurrentCalls = defaultMaxConcurrentCalls;
+        RateLimiter rateLimiter = rateLimiterRegistry.rateLimiter(DEFAULT_INSTANCE);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(DEFAULT_INSTANCE);
+        this.defaultRateLimiter = rateLimiter.getRateLimiterConfig();
+        this.defaultCircuitBreaker = circuitBreaker.getCircuitBreakerConfig();
+        this.defaultInstances = new Instances(DEFAULT_INSTANCE, null, rateLimiter, circuitBreaker, defaultMaxConcurrentCalls > 0
+                ? bulkheadRegistry.bulkhead(DEFAULT_INSTANCE, BulkheadConfig.custom().maxConcurrentCalls(defaultMaxConcurrentCalls).build())
+                : null);
+        this.instances = Caffeine.newBuilder()
+                .maximumSize(maxInstances)
+                .expireAfterAccess(Duration.ofMillis(idleEvict))
+                .removalListener((String name, Instances value, RemovalCause cause) -> {
+                    // a replaced entry was already unregistered before its successor took the name
+                    if (value != null && cause != RemovalCause.REPLACED) remove(value);
+                })
+                .build();
+        LOG.info("resilience instances max {}, idle evict {}ms", maxInstances, idleEvict);
+    }
+
+    public <T> Mono<T> execute(Optional<RouteMatch> route, Supplier<Mono<T>> call,
+                               Function<Throwable, Mono<T>> rateLimited, Function<Throwable, Mono<T>> unavailable) {
+        return resolve(route).flatMap(resolved -> {
+            Mono<T> mono = Mono.defer(call);
+            if (resolved.bulkhead != null)
+                mono = mono.transformDeferred(BulkheadOperator.of(resolved.bulkhead));
+            return mono.transformDeferred(RateLimiterOperator.of(resolved.rateLimiter))
+                    .onErrorResume(ResilienceService::isRejected, rateLimited)
+                    .transformDeferred(CircuitBreakerOperator.of(resolved.circuitBreaker))
+                    .onErrorResume(ex -> !isRejected(ex) && !(ex instanceof RequestBodyTooLargeException), unavailable);
+        });
+    }
+
+    // work without a waiting caller, e.g. a cache revalidation, still holds the bulkhead and feeds the breaker
+    public <T> Mono<T> protect(Optional<RouteMatch> route, Supplier<Mono<T>> call) {
+        return resolve(route).flatMap(resolved -> {
+            Mono<T> mono = Mono.defer(call);
+            if (resolved.bulkhead != null)
+                mono = mono.transformDeferred(BulkheadOperator.of(resolved.bulkhead));
+            return mono.transformDeferred(CircuitBreakerOperator.of(resolved.circuitBreaker));
+        });
+    }
+
+    private static boolean isRejected(Throwable ex) {
+        return ex instanceof RequestNotPermitted || ex instanceof BulkheadFullException || ex instanceof ConcurrencyLimitException;
+    }
+
+    private Mono<Instances> resolve(Optional<RouteMatch> route) {
+        if (route.isEmpty()) return Mono.just(defaultInstances);
+        ResiliencePolicy policy = Optional.ofNullable(route.get().getEntity().getResilience()).orElseGet(ResiliencePolicy::new);
+        String name = DEFAULT_INSTANCE + ":" + route.get().getPattern();
+        if (!Boolean.TRUE.equals(policy.getPerClient()))
+            return Mono.just(instances(name, policy));
+        return ReactiveSecurityContextHolder.getContext()
+                .map(ctx -> ContextUtil.getTokenAttributes(ctx.getAuthentication()))
+                .mapNotNull(attributes -> attributes.get("client_id"))
+                .map(String::valueOf)
+                .defaultIfEmpty("-1")
+                .map(client -> instances(name + "|" + client, policy));
+    }
+
+    // a reloaded route keys the same name, a changed policy must rebuild the instances behind it
+    private Instances instances(String name, ResiliencePolicy policy) {
+        Instances current = instances.getIfPresent(name);
+        if (current != null && policy.equals(current.policy)) return current;
+        return instances.asMap().compute(name, (k, old) -> {
+            if (old != null && policy.equals(old.policy)) return old;
+            if (old != null) {
+                LOG.info("resilience policy of '{}' changed to {}", k, policy);
+                remove(old);
+            }
+            return create(k, policy);
+        });
+    }
+
+    private Instances create(String name, ResiliencePolicy policy) {
+        LOG.debug("create resilience instances '{}', {}", name, policy);
+        RateLimiterConfig.Builder rateLimiter = RateLimiterConfig.from(defaultRateLimiter);
+        Optional.ofNullable(policy.getLimitForPeriod()).ifPresent(rateLimiter::limitForPeriod);
+        Optional.ofNullable(policy.getLimitRefreshPeriod()).map(Duration::ofMillis).ifPresent(rateLimiter::limitRefreshPeriod);
+        Optional.ofNullable(policy.getTimeoutDuration()).map(Duration::ofMillis).ifPresent(rateLimiter::timeoutDuration);
+        CircuitBreakerConfig.Builder circuitBreaker = CircuitBreakerConfig.from(defaultCircuitBreaker);
+        Optional.ofNullable(policy.getFailureRateThreshold()).ifPresent(circuitBreaker::failureRateThreshold);
+        Optional.ofNullable(policy.getSlidingWindowSize()).ifPresent(circuitBreaker::slidingWindowSize);
+        Optional.ofNullable(policy.getMinimumNumberOfCalls()).ifPresent(circuitBreaker::minimumNumberOfCalls);
+        Optional.ofNullable(policy.getWaitDurationInOpenState()).map(Duration::ofMillis).ifPresent(circuitBreaker::waitDurationInOpenState);
+        int maxConcurrentCalls = Optional.ofNullable(policy.getMaxConcurrentCalls()).orElse(defaultMaxConcurrentCalls);
+        return new Instances(name, policy,
+                rateLimiterRegistry.rateLimiter(name, rateLimiter.build()),
+                circuitBreakerRegistry.circuitBreaker(name, circuitBreaker.build()),
+                maxConcurrentCalls > 0
+                        ? bulkheadRegistry.bulkhead(name, BulkheadConfig.custom().maxConcurrentCalls(maxConcurrentCalls).build())
+                        : null);
+    }
+
+    private void remove(Instances value) {
+        LOG.debug("evict resilience instances '{}'", value.name);
+        rateLimiterRegistry.remove(value.name);
+        circuitBreakerRegistry.remove(value.name);
+        if (value.bulkhead != null) bulkheadRegistry.remove(value.name);
+    }
+
+    private static class Instances {
+
+        private final String name;
+        private final ResiliencePolicy policy;
+        private final RateLimiter rateLimiter;
+        private final CircuitBreaker circuitBreaker;
+        private final Bulkhead bulkhead;
+
+        Instances(String name, ResiliencePolicy policy, RateLimiter rateLimiter, CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+            this.name = name;
+            this.policy = policy;
+            this.rateLimiter = rateLimiter;
+            this.circuitBreaker = circuitBreaker;
+            this.bulkhead = bulkhead;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.jarvis.sidecar.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.jarvis.sidecar.model.CachePolicy;
+import com.jarvis.sidecar.model.CachedResponse;
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.model.SecurityEntity;
+import com.jarvis.sidecar.util.ContextUtil;
+import com.jarvis.sidecar.util.TokenDigest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Service
+public class ResponseCacheService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCacheService.class);
+
+    private final Cache<String, CachedResponse> cache;
+    private final Counter staleHits;
+
+    public ResponseCacheService(MeterRegistry registry,
+                                @Value("${RESPONSE-CACHE-MAX-BYTES:67108864}") long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse value) -> key.length() + value.getWeight())
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.getStaleUntil() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        this.staleHits = Counter.builder("sidecar.response.cache.stale").register(registry);
+        CaffeineCacheMetrics.monitor(registry, cache, "sidecar.response.cache");
+        LOG.info("response cache max bytes {}", maxBytes);
+    }
+
+    public Optional<CachePolicy> policy(ServerHttpRequest request, Optional<RouteMatch> route) {
+        if (request.getMethod() != HttpMethod.GET) return Optional.empty();
+        for (String directive : directives(request.getHeaders())) {
+            if ("no-cache".equals(directive) || "no-store".equals(directive))
+                return Optional.empty();
+        }
+        return route.map(RouteMatch::getEntity)
+                .map(SecurityEntity::getCache)
+                .filter(CachePolicy::isEnabled);
+    }
+
+    // the revalidator loads a stale entry in the background, where no caller is waiting on the route resilience
+    public Mono<ResponseEntity<String>> get(ServerHttpRequest request, CachePolicy policy, Supplier<Mono<ResponseEntity<String>>> loader,
+                                            Supplier<Mono<ResponseEntity<String>>> revalidator) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(ContextUtil::getTokenAttributes)
+                .defaultIfEmpty(Collections.emptyMap())
+                .flatMap(claims -> Mono.deferContextual(ctx -> {
+                    String key = key(request, policy, claims);
+                    if (key == null) return loader.get();
+                    boolean authorized = request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION);
+                    return lookup(key, policy, authorized, loader, revalidator, ctx);
+                }));
+    }
+
+    private Mono<ResponseEntity<String>> lookup(String key, CachePolicy policy, boolean authorized,
+                                                Supplier<Mono<ResponseEntity<String>>> loader,
+                                                Supplier<Mono<ResponseEntity<String>>> revalidator, ContextView ctx) {
+        long now = System.currentTimeMillis();
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null && cached.isFresh(now)) {
+            LOG.debug("response cache hit '{}'", key);
+            return Mono.just(cached.toEntity(now));
+        }
+        if (cached != null && now < cached.getStaleUntil()) {
+            LOG.debug("response cache stale hit '{}'", key);
+            staleHits.increment();
+            if (cached.markRevalidating()) {
+                revalidator.get().contextWrite(ctx)
+                        .doFinally(signal -> cached.clearRevalidating())
+                        .subscribe(v -> store(key, policy, authorized, v),
+                                ex -> LOG.debug("exception occurred while revalidate '{}' {}", key, ex.getMessage()));
+            }
+            return Mono.just(cached.toEntity(now));
+        }
+        return loader.get().doOnNext(v -> store(key, policy, authorized, v));
+    }
+
+    private void store(String key, CachePolicy policy, boolean authorized, ResponseEntity<String> entity) {
+        if (entity.getStatusCode() != HttpStatus.OK) return;
+        HttpHeaders headers = entity.getHeaders();
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) return;
+        for (String vary : headers.getVary()) {
+            if ("*".equals(vary) || policy.getVaryHeaders().stream().noneMatch(vary::equalsIgnoreCase))
+                return;
+        }
+        long ttl = -1;
+        long sharedTtl = -1;
+        long staleWhileRevalidate = policy.getStaleWhileRevalidate();
+        boolean shared = false;
+        for (String directive : directives(headers)) {
+            if ("no-store".equals(directive) || "no-cache".equals(directive))
+                return;
+            if ("private".equals(directive) && policy.getVaryClaims().isEmpty())
+                return;
+            if ("public".equals(directive))
+                shared = true;
+            else if (directive.startsWith("max-age="))
+                ttl = seconds(directive);
+            else if (directive.startsWith("s-maxage=")) {
+                sharedTtl = seconds(directive);
+                shared = true;
+            }
+            else if (directive.startsWith("stale-while-revalidate="))
+                staleWhileRevalidate = Math.max(0, seconds(directive));
+        }
+        // without vary claims the key has no caller identity, a response to a credentialed request must be marked shareable
+        if (authorized && policy.getVaryClaims().isEmpty() && !shared) return;
+        long now = System.currentTimeMillis();
+        if (sharedTtl >= 0)
+            ttl = sharedTtl;
+        else if (ttl < 0 && headers.getExpires() > 0)
+            ttl = (headers.getExpires() - (headers.getDate() > 0 ? headers.getDate() : now)) / 1000;
+        else if (ttl < 0)
+            ttl = policy.getTtl();
+        ttl = Math.min(ttl, policy.getMaxTtl());
+        if (ttl <= 0) return;
+        long freshUntil = now + ttl * 1000;
+        cache.put(key, new CachedResponse(entity, now, freshUntil, freshUntil + staleWhileRevalidate * 1000));
+        LOG.debug("response cache store '{}' ttl {}s, stale while revalidate {}s", key, ttl, staleWhileRevalidate);
+    }
+
+    private String key(ServerHttpRequest request, CachePolicy policy, Map<String, Object> claims) {
+        StringBuilder key = new StringBuilder(request.getMethod().name()).append(' ').append(request.getPath().value());
+        char separator = '?';
+        for (Map.Entry<String, List<String>> entry : new TreeMap<>(request.getQueryParams()).entrySet()) {
+            List<String> values = new ArrayList<>(entry.getValue());
+            Collections.sort(values);
+            for (String value : values) {
+                key.append(separator).append(entry.getKey()).append('=').append(value);
+                separator = '&';
+            }
+        }
+        // vary headers may carry credentials, they only enter the key as a digest
+        if (!policy.getVaryHeaders().isEmpty()) {
+            StringBuilder headers = new StringBuilder();
+            for (String header : new TreeSet<>(policy.getVaryHeaders())) {
+                headers.append(header.toLowerCase()).append('=')
+                        .append(String.join(",", request.getHeaders().getOrEmpty(header))).append('\n');
+            }
+            key.append("|h:").append(TokenDigest.sha256(headers.toString()));
+        }
+        for (String claim : new TreeSet<>(policy.getVaryClaims())) {
+            Object value = claims.get(claim);
+            if (value == null) return null;
+            key.append("|c:").append(claim).append('=').append(value);
+        }
+        return key.toString();
+    }
+
+    private static List<String> directives(HttpHeaders headers) {
+        List<String> directives = new ArrayList<>();
+        for (String value : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)) {
+            for (String directive : StringUtils.commaDelimitedListToStringArray(value))
+                directives.add(directive.trim().toLowerCase());
+        }
+        return directives;
+    }
+
+    private static long seconds(String directive) {
+        try {
+            return Long.parseLong(directive.substring(directive.indexOf('=') + 1).replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
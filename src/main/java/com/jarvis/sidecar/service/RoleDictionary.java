@@ -0,0 +1,56 @@
+package com.jarvis.sidecar.service;
+
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.model.SecurityEntity;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class RoleDictionary {
+
+    private static final int MAX_SIZE = Long.SIZE;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    public RoleDictionary(Collection<SecurityEntity> entities) {
+        for (SecurityEntity entity : entities) {
+            if (entity.getRoles() == null) continue;
+            for (String role : entity.getRoles()) {
+                if (ids.size() == MAX_SIZE) return;
+                ids.putIfAbsent(role, ids.size());
+            }
+        }
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public long mask(Collection<String> roles) {
+        long mask = 0;
+        if (roles == null) return mask;
+        for (String role : roles) {
+            Integer id = ids.get(role);
+            if (id != null) mask |= 1L << id;
+        }
+        return mask;
+    }
+
+    public boolean hasAnyRole(RouteMatch route, Collection<? extends GrantedAuthority> authorities) {
+        long granted = 0;
+        for (GrantedAuthority authority : authorities) {
+            Integer id = ids.get(authority.getAuthority());
+            if (id != null) granted |= 1L << id;
+        }
+        if ((granted & route.getRoleMask()) != 0) return true;
+        if (route.isRoleMaskComplete()) return false;
+        // roles beyond the dictionary capacity
+        Collection<String> roles = route.getEntity().getRoles();
+        for (GrantedAuthority authority : authorities) {
+            if (roles.contains(authority.getAuthority())) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,198 @@
+package com.jarvis.sidecar.service;
+
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.model.SecurityEntity;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.PathMatcher;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+
+public final class RouteIndex {
+
+    private static final PathMatcher MATCHER = new AntPathMatcher();
+    private static final String SEPARATOR = "/";
+    private static final String WILDCARD = "*";
+    private static final String DOUBLE_WILDCARD = "**";
+
+    private final Node any = new Node();
+    private final Node unspecified = new Node();
+    private final Map<String, Node> methods = new HashMap<>();
+    private final List<SecurityEntity> entities;
+    private final RoleDictionary roles;
+    private final int size;
+
+    public RouteIndex(Collection<SecurityEntity> entities) {
+        List<Rule> rules = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        this.roles = new RoleDictionary(entities);
+        for (SecurityEntity entity : entities) {
+            long roleMask = roles.mask(entity.getRoles());
+            boolean complete = entity.getRoles() == null || Long.bitCount(roleMask) == new HashSet<>(entity.getRoles()).size();
+            for (String endpoint : entity.getEndpoints())
+                rules.add(new Rule(rules.size(), new RouteMatch(entity, endpoint, roleMask, complete)));
+            if (!CollectionUtils.isEmpty(entity.getMethods()))
+                entity.getMethods().forEach(method -> names.add(method.toUpperCase()));
+        }
+        names.forEach(name -> methods.put(name, new Node()));
+        for (Rule rule : rules) {
+            any.insert(rule);
+            if (CollectionUtils.isEmpty(rule.entity.getMethods())) {
+                unspecified.insert(rule);
+                methods.values().forEach(node -> node.insert(rule));
+            } else {
+                rule.entity.getMethods().forEach(method -> methods.get(method.toUpperCase()).insert(rule));
+            }
+        }
+        this.entities = List.copyOf(entities);
+        this.size = rules.size();
+    }
+
+    public static RouteIndex permitAll(Collection<String> endpoints) {
+        SecurityEntity permit = new SecurityEntity();
+        permit.setPermitAll(true);
+        permit.setEndpoints(endpoints);
+        return new RouteIndex(List.of(permit));
+    }
+
+    public List<SecurityEntity> getEntities() {
+        return entities;
+    }
+
+    public RoleDictionary getRoles() {
+        return roles;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Optional<RouteMatch> find(String path) {
+        return lookup(any, path);
+    }
+
+    public Optional<RouteMatch> find(String path, String method) {
+        Node root = method == null ? unspecified : methods.getOrDefault(method.toUpperCase(), unspecified);
+        return lookup(root, path);
+    }
+
+    private Optional<RouteMatch> lookup(Node root, String path) {
+        if (path == null) return Optional.empty();
+        Search search = new Search(path);
+        search.visit(root, 0);
+        return Optional.ofNullable(search.best).map(rule -> rule.match);
+    }
+
+    private static boolean isSegmentPattern(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+    private static class Rule {
+
+        private final int id;
+        private final SecurityEntity entity;
+        private final RouteMatch match;
+        private final String[] segments;
+        private final boolean leadingSlash;
+        private final boolean trailingSlash;
+        private final boolean doubleWildcard;
+        private final boolean openEnded;
+
+        Rule(int id, RouteMatch match) {
+            String pattern = match.getPattern();
+            this.id = id;
+            this.entity = match.getEntity();
+            this.match = match;
+            this.segments = StringUtils.tokenizeToStringArray(pattern, SEPARATOR, false, true);
+            this.leadingSlash = pattern.startsWith(SEPARATOR);
+            this.trailingSlash = pattern.endsWith(SEPARATOR);
+            this.doubleWildcard = Arrays.asList(segments).contains(DOUBLE_WILDCARD);
+            this.openEnded = segments.length > 0 && DOUBLE_WILDCARD.equals(segments[segments.length - 1]);
+        }
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> literals = new HashMap<>();
+        private final Map<String, Node> patterns = new LinkedHashMap<>();
+        private final List<Rule> rules = new ArrayList<>();
+        private Node wildcard;
+        private Node doubleWildcard;
+        private boolean repeatable;
+        private int minId = Integer.MAX_VALUE;
+
+        void insert(Rule rule) {
+            Node node = this;
+            node.minId = Math.min(node.minId, rule.id);
+            for (String segment : rule.segments) {
+                node = node.child(segment);
+                node.minId = Math.min(node.minId, rule.id);
+            }
+            node.rules.add(rule);
+        }
+
+        private Node child(String segment) {
+            if (DOUBLE_WILDCARD.equals(segment)) {
+                if (doubleWildcard == null) {
+                    doubleWildcard = new Node();
+                    doubleWildcard.repeatable = true;
+                }
+                return doubleWildcard;
+            }
+            if (WILDCARD.equals(segment)) {
+                if (wildcard == null) wildcard = new Node();
+                return wildcard;
+            }
+            return (isSegmentPattern(segment) ? patterns : literals).computeIfAbsent(segment, k -> new Node());
+        }
+    }
+
+    private static class Search {
+
+        private final String[] segments;
+        private final boolean leadingSlash;
+        private final boolean trailingSlash;
+        private Rule best;
+
+        Search(String path) {
+            this.segments = StringUtils.tokenizeToStringArray(path, SEPARATOR, false, true);
+            this.leadingSlash = path.startsWith(SEPARATOR);
+            this.trailingSlash = path.endsWith(SEPARATOR);
+        }
+
+        void visit(Node node, int index) {
+            if (best != null && node.minId >= best.id) return;
+            if (node.doubleWildcard != null) visit(node.doubleWildcard, index);
+            if (index == segments.length) {
+                complete(node);
+                return;
+            }
+            if (node.repeatable) visit(node, index + 1);
+            String segment = segments[index];
+            Node literal = node.literals.get(segment);
+            if (literal != null) visit(literal, index + 1);
+            if (node.wildcard != null) visit(node.wildcard, index + 1);
+            for (Map.Entry<String, Node> entry : node.patterns.entrySet()) {
+                if (MATCHER.match(entry.getKey(), segment)) visit(entry.getValue(), index + 1);
+            }
+        }
+
+        private void complete(Node node) {
+            for (Rule rule : node.rules) {
+                if (rule.leadingSlash == leadingSlash && (rule.openEnded || rule.trailingSlash == trailingSlash))
+                    offer(rule);
+            }
+            // AntPathMatcher lets a trailing "*" match the empty segment after a trailing slash, e.g. "/a/*" and "/a/"
+            if (node.wildcard != null && trailingSlash) {
+                for (Rule rule : node.wildcard.rules) {
+                    if (rule.leadingSlash == leadingSlash && !rule.doubleWildcard) offer(rule);
+                }
+            }
+        }
+
+        private void offer(Rule rule) {
+            if (best == null || rule.id < best.id) best = rule;
+        }
+    }
+}
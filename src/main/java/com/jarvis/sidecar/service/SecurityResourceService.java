@@ -2,140 +2,263 @@ package com.jarvis.sidecar.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jarvis.sidecar.model.RouteDescriptor;
+import com.jarvis.sidecar.model.RouteMatch;
 import com.jarvis.sidecar.model.SecurityEntity;
 import com.jarvis.sidecar.util.ContextUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.http.HttpMethod;
-import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.PathMatcher;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.server.ServerWebExchange;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Service
-public class SecurityResourceService {
+public class SecurityResourceService implements DisposableBean {
 
     private static final Logger LOG = LoggerFactory.getLogger(SecurityResourceService.class);
     private static final String CONFIG_ENV = "SECURITY_CONFIG";
-    private static final PathMatcher MATCHER = new AntPathMatcher();
+    private static final String WATCH_ENV = "SECURITY_CONFIG_WATCH";
+    private static final String RULES_ATTRIBUTE = SecurityResourceService.class.getName() + ".rules";
+    private static final String ROUTE_ATTRIBUTE = SecurityResourceService.class.getName() + ".route";
+    public static final String ADMIN_ENDPOINT = "/actuator/securityconfig/**";
+    public static final List<String> SERVICE_EXCLUDE_PATHS = List.of(
+            "/actuator/**", "/index.html", "/index", "/favicon.ico",
+            "/swagger/**", "/swagger-ui/**", "/swagger-ui.html", "/swagger-ui/index.html",
+            "/swagger-resources/**", "/api-docs/service/**",
+            "/v2/api-docs/**", "/v3/api-docs/**", "/webjars/**",
+            "/configuration/security/**", "/configuration/ui/**",
+            "/image/**", "/scss/**", "/css/**", "/js/**", "/zipkin/**", "/k8s/registry/list");
+    public static final List<String> LOG_EXCLUDE_PATHS = List.of(
+            "/swagger-ui.html", "/v2/api-docs/**", "/swagger/**",
+            "/webjars/**", "/v3/api-docs/**", "/swagger-resources/**",
+            "/configuration/security/**", "/swagger-ui/index.html",
+            "/configuration/ui/**", "/swagger-ui/**",
+            "/css/**", "/oauth/check_token", "/identity/oauth/check_token",
+            "/js/**", "/favicon.ico", "/actuator/**",
+            "/api-docs/service/**", "/image/**", "/scss/**", "/");
+    private static final RouteIndex ADMIN = RouteIndex.permitAll(List.of(ADMIN_ENDPOINT));
+    private static final RouteIndex LOG_EXCLUDES = RouteIndex.permitAll(LOG_EXCLUDE_PATHS);
+    private static final RouteIndex SERVICE_EXCLUDES = RouteIndex.permitAll(SERVICE_EXCLUDE_PATHS);
+    private static final Set<String> HTTP_METHODS = Arrays.stream(HttpMethod.values()).map(HttpMethod::name).collect(Collectors.toSet());
 
-    private final Collection<SecurityEntity> securities = new HashSet<>();
+    private final AtomicReference<RuleSet> rules = new AtomicReference<>(new RuleSet(Collections.emptyList(), 0, null));
+    private final Thread watcher;
 
     public SecurityResourceService() {
-        add(loadSecurityEntity());
+        String configPath = System.getenv(CONFIG_ENV);
+        if (StringUtils.isNotEmpty(configPath)) {
+            LOG.info("security config {}={}", CONFIG_ENV, configPath);
+            reload();
+        }
+        this.watcher = StringUtils.isNotEmpty(configPath) && Boolean.parseBoolean(System.getenv(WATCH_ENV))
+                ? watch(Paths.get(configPath).toAbsolutePath()) : null;
     }
 
     public void add(SecurityEntity security) {
-        if (security != null) this.securities.add(security);
+        if (security != null) add(List.of(security));
     }
 
     public void add(Collection<SecurityEntity> securities) {
-        if (securities != null && !securities.isEmpty())
-            this.securities.addAll(securities);
+        if (securities == null || securities.isEmpty()) return;
+        rules.updateAndGet(current -> {
+            Collection<SecurityEntity> merged = new LinkedHashSet<>(current.index.getEntities());
+            merged.addAll(securities);
+            return new RuleSet(merged, current.version + 1, current.digest);
+        });
     }
 
     public Collection<SecurityEntity> getSecurities() {
-        return new HashSet<>(securities);
+        return new HashSet<>(rules.get().index.getEntities());
+    }
+
+    public Map<String, Object> getStatus() {
+        RuleSet current = rules.get();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("config", System.getenv(CONFIG_ENV));
+        status.put("watch", watcher != null);
+        status.put("version", current.version);
+        status.put("loaded_at", current.loadedAt);
+        status.put("digest", current.digest);
+        status.put("rules", current.index.size());
+        return status;
+    }
+
+    public boolean isEmpty(ServerWebExchange exchange) {
+        return rules(exchange).index.getEntities().isEmpty();
+    }
+
+    public RouteDescriptor describe(ServerWebExchange exchange) {
+        return (RouteDescriptor) exchange.getAttributes().computeIfAbsent(ROUTE_ATTRIBUTE, k -> {
+            RouteIndex index = rules(exchange).index;
+            String path = exchange.getRequest().getPath().value();
+            String method = exchange.getRequest().getMethod().name();
+            Optional<RouteMatch> any = index.find(path);
+            RouteDescriptor descriptor = new RouteDescriptor(index.find(path, method).orElse(null),
+                    match(any, method, e -> Boolean.TRUE.equals(e.getPermitAll())),
+                    match(any, method, e -> Boolean.TRUE.equals(e.getDenyAll())),
+                    LOG_EXCLUDES.find(path).isPresent(), SERVICE_EXCLUDES.find(path).isPresent(), ADMIN.find(path).isPresent());
+            LOG.debug("{} {} {}", method, path, descriptor);
+            return descriptor;
+        });
     }
 
     public boolean isPermit(ServerWebExchange exchange) {
-        return isPermit(exchange.getRequest().getPath().value(), exchange.getRequest().getMethod().name());
+        return describe(exchange).isPermit();
     }
 
     public boolean isPermit(String url, String method) {
-        return match(url, method, e -> Boolean.TRUE.equals(e.getPermitAll()));
+        return match(rules.get().index.find(url), method, e -> Boolean.TRUE.equals(e.getPermitAll()));
     }
 
     public boolean isDeny(ServerWebExchange exchange) {
-        return isDeny(exchange.getRequest().getPath().value(), exchange.getRequest().getMethod().name());
+        return describe(exchange).isDeny();
     }
 
     public boolean isDeny(String url, String method) {
-        return match(url, method, e -> Boolean.TRUE.equals(e.getDenyAll()));
+        return match(rules.get().index.find(url), method, e -> Boolean.TRUE.equals(e.getDenyAll()));
     }
 
-    private boolean match(String url, String method, Predicate<SecurityEntity> predicate) {
-        for (SecurityEntity entity : securities) {
-            for (String endpoint : entity.getEndpoints()) {
-                if (MATCHER.match(endpoint, url)) {
-                    if (CollectionUtils.isEmpty(entity.getMethods()) || StringUtils.isEmpty(method))
-                        return predicate.test(entity);
-                    return predicate.test(entity) && entity.getMethods().parallelStream()
-                            .anyMatch(v -> v.equalsIgnoreCase(method));
-                }
-            }
+    public Optional<RouteMatch> findRoute(ServerWebExchange exchange) {
+        return describe(exchange).getRoute();
+    }
+
+    public Optional<RouteMatch> findRoute(String url, String method) {
+        return rules.get().index.find(url, method);
+    }
+
+    public boolean hasAnyRole(ServerWebExchange exchange, RouteMatch route, Collection<? extends GrantedAuthority> authorities) {
+        return rules(exchange).index.getRoles().hasAnyRole(route, authorities);
+    }
+
+    private RuleSet rules(ServerWebExchange exchange) {
+        return (RuleSet) exchange.getAttributes().computeIfAbsent(RULES_ATTRIBUTE, k -> rules.get());
+    }
+
+    private boolean match(Optional<RouteMatch> route, String method, Predicate<SecurityEntity> predicate) {
+        if (route.isEmpty()) return false;
+        SecurityEntity entity = route.get().getEntity();
+        if (CollectionUtils.isEmpty(entity.getMethods()) || StringUtils.isEmpty(method))
+            return predicate.test(entity);
+        if (!predicate.test(entity)) return false;
+        for (String v : entity.getMethods()) {
+            if (v.equalsIgnoreCase(method)) return true;
         }
         return false;
     }
 
-    public ServerHttpSecurity.AuthorizeExchangeSpec applyAntPatterns(ServerHttpSecurity.AuthorizeExchangeSpec spec) {
-        if (securities.isEmpty()) return spec.pathMatchers("/**").authenticated();
-        for (SecurityEntity entity : securities) {
-            String[] endpoints = entity.getEndpoints().toArray(new String[]{});
-            if (CollectionUtils.isEmpty(entity.getMethods())) {
-                if (Boolean.TRUE.equals(entity.getDenyAll())) {
-                    LOG.info("deny all {}", endpoints);
-                    spec.pathMatchers(endpoints).denyAll();
-                } else if (Boolean.TRUE.equals(entity.getPermitAll())) {
-                    LOG.info("permit all {}", endpoints);
-                    spec.pathMatchers(endpoints).permitAll();
-                } else if (Boolean.TRUE.equals(entity.getAuthenticated())) {
-                    LOG.info("secure {} required authenticated", endpoints);
-                    spec.pathMatchers(endpoints).authenticated();
-                } else {
-                    String[] roles = entity.getRoles().toArray(new String[]{});
-                    LOG.info("secure {}, has access role {}", endpoints, roles);
-                    spec.pathMatchers(endpoints).hasAnyAuthority(roles);
-                }
-            } else {
+    public synchronized Map<String, Object> reload() {
+        String configPath = System.getenv(CONFIG_ENV);
+        RuleSet current = rules.get();
+        try {
+            if (StringUtils.isEmpty(configPath))
+                throw new IllegalStateException(CONFIG_ENV + " is not set");
+            Path file = Paths.get(configPath);
+            if (!Files.isRegularFile(file))
+                throw new FileNotFoundException("file '" + configPath + "' not exist");
+            byte[] content = Files.readAllBytes(file);
+            String digest = DigestUtils.md5DigestAsHex(content);
+            if (digest.equals(current.digest)) {
+                LOG.debug("security config {} unchanged", configPath);
+                return getStatus();
+            }
+            List<SecurityEntity> list = ContextUtil.getBean(ObjectMapper.class).readValue(content, new TypeReference<>() {
+            });
+            validate(list);
+            list.sort(Comparator.comparingInt(SecurityEntity::getOrder));
+            RuleSet next = new RuleSet(list, current.version + 1, digest);
+            rules.set(next);
+            LOG.info("load security config file {}, version {}, {} rules", configPath, next.version, next.index.size());
+            for (SecurityEntity entity : list)
+                LOG.info("{} {} {}", entity.getMethods(), entity.getEndpoints(), describe(entity));
+            return getStatus();
+        } catch (Exception ex) {
+            if (current.version == 0)
+                throw new IllegalStateException(ex);
+            LOG.error("exception occurred while reload security config {}, keep version {}", configPath, current.version, ex);
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+    }
+
+    private void validate(List<SecurityEntity> list) {
+        for (SecurityEntity entity : list) {
+            if (CollectionUtils.isEmpty(entity.getEndpoints()))
+                throw new IllegalArgumentException("security entity " + entity.getId() + " has no endpoints");
+            if (entity.getMethods() != null) {
                 for (String method : entity.getMethods()) {
-                    HttpMethod httpMethod = HttpMethod.valueOf(method);
-                    if (Boolean.TRUE.equals(entity.getDenyAll())) {
-                        LOG.info("deny all {} {}", method, endpoints);
-                        spec.pathMatchers(httpMethod, endpoints).denyAll();
-                    } else if (Boolean.TRUE.equals(entity.getPermitAll())) {
-                        LOG.info("permit all {} {}", method, endpoints);
-                        spec.pathMatchers(httpMethod, endpoints).permitAll();
-                    } else if (Boolean.TRUE.equals(entity.getAuthenticated())) {
-                        LOG.info("secure {} {} required authenticated", method, endpoints);
-                        spec.pathMatchers(httpMethod, endpoints).authenticated();
-                    } else {
-                        String[] roles = entity.getRoles().toArray(new String[]{});
-                        LOG.info("secure {} {}, has access role {}", method, endpoints, roles);
-                        spec.pathMatchers(httpMethod, endpoints).hasAnyAuthority(roles);
-                    }
+                    if (!HTTP_METHODS.contains(method.toUpperCase()))
+                        throw new IllegalArgumentException("security entity " + entity.getId() + " has invalid method '" + method + "'");
                 }
             }
         }
-        return spec;
     }
 
-    private Collection<SecurityEntity> loadSecurityEntity() {
-        try {
-            List<SecurityEntity> list = new ArrayList<>();
-            String configPath = System.getenv(CONFIG_ENV);
-            if (StringUtils.isNotEmpty(configPath)) {
-                LOG.info("security config {}={}", CONFIG_ENV, configPath);
-                File file = new File(configPath);
-                if (!file.exists() || file.isDirectory())
-                    throw new FileNotFoundException("file '" + configPath + "' not exist");
-                LOG.info("load security config file {}", configPath);
-                list = ContextUtil.getBean(ObjectMapper.class).readValue(new FileInputStream(file), new TypeReference<>() {
-                });
+    private static String describe(SecurityEntity entity) {
+        if (Boolean.TRUE.equals(entity.getDenyAll())) return "deny all";
+        if (Boolean.TRUE.equals(entity.getPermitAll())) return "permit all";
+        if (Boolean.TRUE.equals(entity.getAuthenticated())) return "required authenticated";
+        return "has access role " + entity.getRoles();
+    }
+
+    private Thread watch(Path file) {
+        Thread thread = new Thread(() -> {
+            try (WatchService service = file.getFileSystem().newWatchService()) {
+                file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                LOG.info("watch security config {}", file);
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey key = service.take();
+                    do {
+                        key.pollEvents();
+                        key.reset();
+                    } while ((key = service.poll(500, TimeUnit.MILLISECONDS)) != null);
+                    try {
+                        reload();
+                    } catch (Exception ignored) {
+                        // already logged, previous rules stay active
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (IOException ex) {
+                LOG.error("exception occurred while watch security config {}", file, ex);
             }
-            list.sort(Comparator.comparingInt(SecurityEntity::getOrder));
-            return list;
-        } catch (Exception ex) {
-            throw new IllegalStateException(ex);
+        }, "security-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void destroy() {
+        if (watcher != null) watcher.interrupt();
+    }
+
+    private static class RuleSet {
+
+        private final RouteIndex index;
+        private final long version;
+        private final long loadedAt;
+        private final String digest;
+
+        RuleSet(Collection<SecurityEntity> entities, long version, String digest) {
+            this.index = new RouteIndex(entities);
+            this.version = version;
+            this.loadedAt = System.currentTimeMillis();
+            this.digest = digest;
         }
     }
 }
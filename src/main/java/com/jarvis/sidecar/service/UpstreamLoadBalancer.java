@@ -0,0 +1,154 @@
+package com.jarvis.sidecar.service;
+
+import com.jarvis.sidecar.exception.RequestBodyTooLargeException;
+import com.jarvis.sidecar.model.UpstreamEndpoint;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+@Service
+public class UpstreamLoadBalancer implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamLoadBalancer.class);
+
+    private final List<UpstreamEndpoint> endpoints = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final String strategy;
+    private final int ejectFailures;
+    private final long ejectDuration;
+    private final Disposable probe;
+
+    public UpstreamLoadBalancer(@Qualifier("upstreamWebClient") WebClient webClient, MeterRegistry registry,
+                                @Value("${PC-SCHEMA:http}") String scheme,
+                                @Value("${PC-HOST:localhost}") String host,
+                                @Value("${PC-PORT:80}") String port,
+                                @Value("${PC-ENDPOINTS:}") String pcEndpoints,
+                                @Value("${UPSTREAM-BALANCER:round-robin}") String strategy,
+                                @Value("${UPSTREAM-EJECT-CONSECUTIVE-FAILURES:5}") int ejectFailures,
+                                @Value("${UPSTREAM-EJECT-DURATION:30000}") long ejectDuration,
+                                @Value("${UPSTREAM-HEALTH-PATH:}") String healthPath,
+                                @Value("${UPSTREAM-HEALTH-INTERVAL:10000}") long healthInterval) {
+        if (StringUtils.hasText(pcEndpoints)) {
+            for (String endpoint : StringUtils.commaDelimitedListToStringArray(pcEndpoints))
+                this.endpoints.add(UpstreamEndpoint.parse(endpoint, port));
+        } else {
+            this.endpoints.add(new UpstreamEndpoint(host, port));
+        }
+        this.strategy = strategy;
+        this.ejectFailures = ejectFailures;
+        this.ejectDuration = ejectDuration;
+        for (UpstreamEndpoint endpoint : endpoints) {
+            Gauge.builder("sidecar.upstream.endpoint.outstanding", endpoint, UpstreamEndpoint::getOutstanding)
+                    .tag("endpoint", endpoint.toString()).register(registry);
+            Gauge.builder("sidecar.upstream.endpoint.available", endpoint, v -> v.isAvailable(System.currentTimeMillis()) ? 1 : 0)
+                    .tag("endpoint", endpoint.toString()).register(registry);
+        }
+        LOG.info("upstream endpoints {}, balancer '{}', eject after {} failures for {}ms", endpoints, strategy, ejectFailures, ejectDuration);
+        if (StringUtils.hasText(healthPath)) {
+            LOG.info("upstream health probe '{}' every {}ms", healthPath, healthInterval);
+            Duration interval = Duration.ofMillis(healthInterval);
+            this.probe = Flux.interval(interval)
+                    .flatMap(tick -> Flux.fromIterable(endpoints).flatMap(endpoint -> probe(webClient, scheme, healthPath, endpoint, interval)))
+                    .subscribe();
+        } else {
+            this.probe = null;
+        }
+    }
+
+    public <T> Mono<T> execute(Function<UpstreamEndpoint, Mono<T>> call) {
+        return Mono.defer(() -> {
+            UpstreamEndpoint endpoint = choose();
+            long start = System.nanoTime();
+            endpoint.begin();
+            return call.apply(endpoint)
+                    .doOnSuccess(v -> endpoint.success(System.nanoTime() - start))
+                    .doOnError(ex -> onError(endpoint, ex, System.nanoTime() - start))
+                    .doFinally(signal -> endpoint.end());
+        });
+    }
+
+    private UpstreamEndpoint choose() {
+        if (endpoints.size() == 1) return endpoints.get(0);
+        long now = System.currentTimeMillis();
+        List<UpstreamEndpoint> candidates = new ArrayList<>(endpoints.size());
+        for (UpstreamEndpoint endpoint : endpoints) {
+            if (endpoint.isAvailable(now)) candidates.add(endpoint);
+        }
+        if (candidates.isEmpty()) candidates = endpoints;
+        if (candidates.size() == 1) return candidates.get(0);
+        switch (strategy) {
+            case "least-request":
+                return pickTwo(candidates, (a, b) -> a.getOutstanding() <= b.getOutstanding());
+            case "peak-ewma":
+                return pickTwo(candidates, (a, b) -> a.cost() <= b.cost());
+            default:
+                return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+        }
+    }
+
+    private UpstreamEndpoint pickTwo(List<UpstreamEndpoint> candidates, BiPredicate<UpstreamEndpoint, UpstreamEndpoint> preference) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) second++;
+        UpstreamEndpoint a = candidates.get(first);
+        UpstreamEndpoint b = candidates.get(second);
+        return preference.test(a, b) ? a : b;
+    }
+
+    private void onError(UpstreamEndpoint endpoint, Throwable ex, long latencyNanos) {
+        // the client aborted its own oversized body, says nothing about the endpoint
+        if (ExceptionUtils.indexOfType(ex, RequestBodyTooLargeException.class) >= 0) return;
+        boolean failure = ex instanceof WebClientRequestException || ex instanceof TimeoutException
+                || (ex instanceof WebClientResponseException && ((WebClientResponseException) ex).getStatusCode().is5xxServerError());
+        if (!failure) {
+            endpoint.success(latencyNanos);
+            return;
+        }
+        if (endpoint.failure(latencyNanos) >= ejectFailures && endpoints.size() > 1) {
+            LOG.warn("eject upstream endpoint {} for {}ms, {}", endpoint, ejectDuration, ex.getMessage());
+            endpoint.eject(System.currentTimeMillis() + ejectDuration);
+        }
+    }
+
+    private Mono<Void> probe(WebClient webClient, String scheme, String path, UpstreamEndpoint endpoint, Duration timeout) {
+        return webClient.get()
+                .uri(scheme + "://" + endpoint.getHost() + ":" + endpoint.getPort() + path)
+                .retrieve().toBodilessEntity()
+                .timeout(timeout)
+                .map(v -> true)
+                .onErrorReturn(false)
+                .doOnNext(healthy -> {
+                    if (healthy != endpoint.isHealthy())
+                        LOG.warn("upstream endpoint {} healthy {}", endpoint, healthy);
+                    endpoint.setHealthy(healthy);
+                }).then();
+    }
+
+    @Override
+    public void destroy() {
+        if (probe != null) probe.dispose();
+    }
+}
@@ -6,7 +6,12 @@ import io.micrometer.tracing.Tracer;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.env.Environment;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 
 public final class ContextUtil {
@@ -24,7 +29,8 @@ public final class ContextUtil {
     public static <T> Optional<T> optBean(Class<T> clazz) {
         try {
             return Optional.ofNullable(context).flatMap(v -> Optional.of(v.getBean(clazz)));
-        } catch (BeansException e) {
+        } catch (BeansException | IllegalStateException e) {
+            // a context that is closed or not refreshed yet has no beans to offer
             return Optional.empty();
         }
     }
@@ -34,6 +40,14 @@ public final class ContextUtil {
                 .map(Span::context).map(TraceContext::traceId).orElse(null);
     }
 
+    public static Map<String, Object> getTokenAttributes(Authentication auth) {
+        if (auth instanceof JwtAuthenticationToken)
+            return ((JwtAuthenticationToken) auth).getTokenAttributes();
+        else if (auth instanceof BearerTokenAuthentication)
+            return ((BearerTokenAuthentication) auth).getTokenAttributes();
+        return Collections.emptyMap();
+    }
+
     public static String getAppName() {
         return optBean(Environment.class)
                 .map(v -> v.getProperty("spring.application.name", "sidecar"))
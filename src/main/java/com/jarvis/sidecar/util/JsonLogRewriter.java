@@ -0,0 +1,182 @@
+package com.jarvis.sidecar.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public final class JsonLogRewriter {
+
+    public static final String MASK = "****";
+    public static final String DEFAULT_MASK_FIELDS = "password,passwd,pin,cvv,cvc,pan,cardNumber,card_number,secret";
+
+    private static final JsonFactory FACTORY = JsonFactory.builder().build();
+    private static final String PATH_PREFIX = "$.";
+    private static final String TRUNCATED = "...";
+
+    private final Set<String> fields = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private final Set<String> paths = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private final int maxString;
+    private final int maxArray;
+
+    public JsonLogRewriter(Collection<String> masks, int maxString, int maxArray) {
+        for (String mask : masks) {
+            String name = mask.trim();
+            if (name.startsWith(PATH_PREFIX)) name = name.substring(PATH_PREFIX.length());
+            if (name.isEmpty()) continue;
+            (name.indexOf('.') < 0 ? fields : paths).add(name);
+        }
+        this.maxString = maxString;
+        this.maxArray = maxArray;
+    }
+
+    public static JsonLogRewriter fromEnvironment() {
+        String masks = Optional.ofNullable(System.getenv("LOG_MASK_FIELDS")).orElse(DEFAULT_MASK_FIELDS);
+        int maxString = Integer.parseInt(Optional.ofNullable(System.getenv("LOG_MAX_STRING_LENGTH")).orElse("1024"));
+        int maxArray = Integer.parseInt(Optional.ofNullable(System.getenv("LOG_MAX_ARRAY_SIZE")).orElse("100"));
+        return new JsonLogRewriter(Arrays.asList(masks.split(",")), maxString, maxArray);
+    }
+
+    // minify, mask and truncate in one pass over the tokens, a truncated capture keeps the part written so far
+    public String rewrite(String body) throws IOException {
+        StringWriter out = new StringWriter(body.length());
+        try (JsonParser parser = FACTORY.createParser(body);
+             JsonGenerator generator = FACTORY.createGenerator(out)) {
+            try {
+                copy(parser, generator);
+            } catch (IOException ex) {
+                generator.flush();
+                return out.append(TRUNCATED).toString();
+            }
+        }
+        return out.toString();
+    }
+
+    public boolean isMaskedField(String name) {
+        return name != null && fields.contains(name);
+    }
+
+    // masks the values of an urlencoded form, names are matched decoded
+    public String maskParameters(String form) {
+        if (form == null || form.isEmpty() || fields.isEmpty()) return form;
+        StringBuilder builder = new StringBuilder(form.length());
+        for (int start = 0; start <= form.length(); ) {
+            int end = form.indexOf('&', start);
+            if (end < 0) end = form.length();
+            int equals = form.indexOf('=', start);
+            if (equals >= 0 && equals < end && isMaskedField(decode(form.substring(start, equals))))
+                builder.append(form, start, equals + 1).append(MASK);
+            else
+                builder.append(form, start, end);
+            if (end < form.length()) builder.append('&');
+            start = end + 1;
+        }
+        return builder.toString();
+    }
+
+    private static String decode(String name) {
+        try {
+            return URLDecoder.decode(name, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            return name;
+        }
+    }
+
+    private void copy(JsonParser parser, JsonGenerator generator) throws IOException {
+        Scope scope = new Scope();
+        boolean masked = false;
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            switch (token) {
+                case FIELD_NAME:
+                    String name = parser.currentName();
+                    generator.writeFieldName(name);
+                    masked = isMasked(scope, name);
+                    scope.field = name;
+                    continue;
+                case END_OBJECT:
+                case END_ARRAY:
+                    if (scope.array && scope.count > maxArray)
+                        generator.writeString(TRUNCATED + (scope.count - maxArray));
+                    generator.copyCurrentEvent(parser);
+                    scope.pop();
+                    continue;
+                default:
+                    break;
+            }
+            if (scope.array && ++scope.count > maxArray) {
+                parser.skipChildren();
+            } else if (masked) {
+                generator.writeString(MASK);
+                parser.skipChildren();
+            } else if (token.isStructStart()) {
+                generator.copyCurrentEvent(parser);
+                scope.push(token == JsonToken.START_ARRAY, paths.isEmpty());
+            } else if (token == JsonToken.VALUE_STRING && parser.getTextLength() > maxString) {
+                generator.writeString(new StringBuilder(maxString + TRUNCATED.length())
+                        .append(parser.getTextCharacters(), parser.getTextOffset(), maxString).append(TRUNCATED).toString());
+            } else {
+                generator.copyCurrentEvent(parser);
+            }
+            masked = false;
+        }
+    }
+
+    private boolean isMasked(Scope scope, String name) {
+        if (fields.contains(name)) return true;
+        if (paths.isEmpty()) return false;
+        int length = scope.path.length();
+        if (length > 0) scope.path.append('.');
+        scope.path.append(name);
+        boolean masked = paths.contains(scope.path.toString());
+        scope.path.setLength(length);
+        return masked;
+    }
+
+    // nesting state; paths skip array indexes, "order.items.pan" matches the pan of every item
+    private static class Scope {
+
+        private final StringBuilder path = new StringBuilder();
+        private int[] counts = new int[16];
+        private int[] lengths = new int[16];
+        private boolean[] arrays = new boolean[16];
+        private int depth;
+        private boolean array;
+        private int count;
+        private String field;
+
+        void push(boolean array, boolean skipPath) {
+            if (depth == counts.length) {
+                counts = Arrays.copyOf(counts, depth * 2);
+                lengths = Arrays.copyOf(lengths, depth * 2);
+                arrays = Arrays.copyOf(arrays, depth * 2);
+            }
+            counts[depth] = count;
+            lengths[depth] = path.length();
+            arrays[depth] = this.array;
+            depth++;
+            if (!skipPath && field != null && !this.array) {
+                if (path.length() > 0) path.append('.');
+                path.append(field);
+            }
+            this.array = array;
+            this.count = 0;
+            this.field = null;
+        }
+
+        void pop() {
+            if (depth == 0) return;
+            depth--;
+            count = counts[depth];
+            array = arrays[depth];
+            path.setLength(lengths[depth]);
+            field = null;
+        }
+    }
+}
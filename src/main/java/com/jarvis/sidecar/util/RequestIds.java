@@ -0,0 +1,32 @@
+package com.jarvis.sidecar.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class RequestIds {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int NODE = new SecureRandom().nextInt() & 0xffffff;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private RequestIds() {
+    }
+
+    // <epoch millis:12><node:6><sequence:8> in hex, sorts by time and is unique within the process
+    public static String next() {
+        char[] id = new char[28];
+        hex(id, 0, System.currentTimeMillis(), 12);
+        id[12] = '-';
+        hex(id, 13, NODE, 6);
+        id[19] = '-';
+        hex(id, 20, SEQUENCE.getAndIncrement(), 8);
+        return new String(id);
+    }
+
+    private static void hex(char[] target, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            target[i] = HEX[(int) value & 0xf];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.jarvis.sidecar.filter;
+
+import com.jarvis.sidecar.exception.RequestBodyTooLargeException;
+import com.jarvis.sidecar.util.ContextUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BodyLimitFilterTest {
+
+	private final BodyLimitFilter filter = new BodyLimitFilter(10);
+
+	@Test
+	void rejectsDeclaredLengthBeforeReadingBody() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/upload").contentLength(13).body("0123456789abc"));
+		AtomicBoolean called = new AtomicBoolean();
+		filter.filter(exchange, e -> {
+			called.set(true);
+			return Mono.empty();
+		}).block();
+		assertFalse(called.get());
+		assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exchange.getResponse().getStatusCode());
+	}
+
+	@Test
+	void answers413AfterApplicationContextClosed() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		context.refresh();
+		context.close();
+		ContextUtil.setContext(context);
+		try {
+			MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/upload").contentLength(13).body("0123456789abc"));
+			filter.filter(exchange, e -> Mono.empty()).block();
+			assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exchange.getResponse().getStatusCode());
+		} finally {
+			ContextUtil.setContext(null);
+		}
+	}
+
+	@Test
+	void failsChunkedBodyOverLimit() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/upload")
+				.header(HttpHeaders.TRANSFER_ENCODING, "chunked")
+				.body(Flux.just(chunk("012345"), chunk("6789ab"))));
+		StepVerifier.create(filter.filter(exchange, e -> DataBufferUtils.join(e.getRequest().getBody()).then()))
+				.expectErrorSatisfies(ex -> {
+					assertInstanceOf(RequestBodyTooLargeException.class, ex);
+					assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ((RequestBodyTooLargeException) ex).getStatusCode());
+				})
+				.verify();
+	}
+
+	@Test
+	void countsBodyWithoutFramingHeaders() {
+		// an http/2 request may carry a body with neither content-length nor transfer-encoding
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/upload")
+				.body(Flux.just(chunk("012345"), chunk("6789ab"))));
+		StepVerifier.create(filter.filter(exchange, e -> DataBufferUtils.join(e.getRequest().getBody()).then()))
+				.verifyError(RequestBodyTooLargeException.class);
+	}
+
+	@Test
+	void passesChunkedBodyWithinLimit() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/upload")
+				.header(HttpHeaders.TRANSFER_ENCODING, "chunked")
+				.body(Flux.just(chunk("01234"), chunk("56789"))));
+		StepVerifier.create(filter.filter(exchange, e -> DataBufferUtils.join(e.getRequest().getBody())
+						.doOnNext(buffer -> {
+							assertEquals(10, buffer.readableByteCount());
+							DataBufferUtils.release(buffer);
+						}).then()))
+				.verifyComplete();
+		assertNull(exchange.getResponse().getStatusCode());
+	}
+
+	private static DataBuffer chunk(String text) {
+		return DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
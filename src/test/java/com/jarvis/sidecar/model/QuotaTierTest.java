@@ -0,0 +1,18 @@
+package com.jarvis.sidecar.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuotaTierTest {
+
+	@Test
+	void treatsMissingOrNullListsAsEmpty() throws Exception {
+		ObjectMapper mapper = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+		QuotaTier tier = mapper.readValue("{\"name\":\"gold\",\"clients\":null,\"capacity\":10,\"refill_per_second\":1}", QuotaTier.class);
+		assertTrue(tier.getClients().isEmpty());
+		assertTrue(tier.getRoles().isEmpty());
+	}
+}
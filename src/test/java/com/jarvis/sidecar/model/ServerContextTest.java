@@ -0,0 +1,15 @@
+package com.jarvis.sidecar.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ServerContextTest {
+
+	@Test
+	void masksBodyAfterWhitespaceAndByteOrderMark() {
+		assertEquals("{\"password\":\"****\"}", ServerContext.compactBody(" \r\n{\"password\": \"secret\"}"));
+		assertEquals("[{\"pin\":\"****\"}]", ServerContext.compactBody("\uFEFF [{\"pin\": 1234}]"));
+		assertEquals("plain text", ServerContext.compactBody("plain text"));
+	}
+}
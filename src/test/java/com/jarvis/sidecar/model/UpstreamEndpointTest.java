@@ -0,0 +1,30 @@
+package com.jarvis.sidecar.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamEndpointTest {
+
+	@Test
+	void parsesHostsAndIpv6Literals() {
+		assertEquals("orders:8080", UpstreamEndpoint.parse(" orders:8080 ", "80").toString());
+		assertEquals("orders:80", UpstreamEndpoint.parse("orders", "80").toString());
+		assertEquals("[::1]:8080", UpstreamEndpoint.parse("[::1]:8080", "80").toString());
+		assertEquals("[fe80::1]:80", UpstreamEndpoint.parse("[fe80::1]", "80").toString());
+		assertEquals("[2001:db8::7]:80", UpstreamEndpoint.parse("2001:db8::7", "80").toString());
+	}
+
+	@Test
+	void costTracksLatencyAndOutstanding() {
+		UpstreamEndpoint endpoint = new UpstreamEndpoint("orders", "80");
+		endpoint.success(1000);
+		assertEquals(1000, endpoint.cost());
+		endpoint.begin();
+		assertEquals(2000, endpoint.cost());
+		endpoint.end();
+		endpoint.success(10);
+		assertTrue(endpoint.cost() > 10 && endpoint.cost() <= 1000);
+	}
+}
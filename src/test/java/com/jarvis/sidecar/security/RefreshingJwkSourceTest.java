@@ -0,0 +1,81 @@
+package com.jarvis.sidecar.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshingJwkSourceTest {
+
+	private static final String URI = "https://idp/jwks";
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final AtomicInteger fetches = new AtomicInteger();
+
+	@Test
+	void throttlesFetchWithoutKeys() {
+		RefreshingJwkSource source = source(WebClient.builder().exchangeFunction(request -> {
+			fetches.incrementAndGet();
+			return Mono.error(new ConnectException("refused"));
+		}).build());
+		try {
+			assertEquals(1, fetches.get());
+			assertTrue(Double.isNaN(gauge("sidecar.jwks.staleness")));
+			for (int i = 0; i < 3; i++)
+				StepVerifier.create(source.apply(jwt("k1"))).verifyError(JwtException.class);
+			assertEquals(1, fetches.get());
+			assertEquals(3, registry.get("sidecar.jwks.refetch").tag("outcome", "throttled").counter().count());
+		} finally {
+			source.dispose();
+		}
+	}
+
+	@Test
+	void replacedSourceOwnsTheGauges() throws Exception {
+		RSAKey key = new RSAKeyGenerator(2048).keyID("k1").generate();
+		String jwks = new JWKSet(key.toPublicJWK()).toString();
+		RefreshingJwkSource failing = source(WebClient.builder()
+				.exchangeFunction(request -> Mono.error(new ConnectException("refused"))).build());
+		failing.dispose();
+		RefreshingJwkSource loaded = source(WebClient.builder().exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+				.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE).body(jwks).build())).build());
+		try {
+			assertEquals(1, gauge("sidecar.jwks.keys"));
+			assertTrue(gauge("sidecar.jwks.staleness") < 1);
+			StepVerifier.create(loaded.apply(jwt("k1"))).expectNextCount(1).verifyComplete();
+		} finally {
+			loaded.dispose();
+		}
+	}
+
+	private RefreshingJwkSource source(WebClient webClient) {
+		return new RefreshingJwkSource(webClient, URI, registry, Duration.ofMinutes(5), Duration.ofHours(1), Duration.ofMinutes(1));
+	}
+
+	private double gauge(String name) {
+		return registry.get(name).tag("uri", URI).gauge().value();
+	}
+
+	private static SignedJWT jwt(String kid) {
+		return new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(kid).build(), new JWTClaimsSet.Builder().subject("alice").build());
+	}
+}
@@ -0,0 +1,75 @@
+package com.jarvis.sidecar.server;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MultipartCaptureTest {
+
+	private static final String BODY = "preamble\r\n"
+			+ "--XyZ\r\n"
+			+ "Content-Disposition: form-data; name=\"user\"\r\n\r\n"
+			+ "alice\r\n"
+			+ "--XyZ\r\n"
+			+ "content-disposition: form-data; name=\"doc\"; filename=\"a.pdf\"\r\n"
+			+ "Content-Type: application/pdf\r\n\r\n"
+			+ "%PDF\r\n--XyNOT\r\r\n-- end\r\n"
+			+ "--XyZ\r\n"
+			+ "Content-Disposition: form-data; name=\"note\"\r\n\r\n"
+			+ "0123456789abcdef\r\n"
+			+ "--XyZ--\r\n";
+
+	@Test
+	void inspectsPartsAcrossChunks() {
+		byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+		for (int split = 1; split < bytes.length; split++) {
+			MultipartCapture capture = MultipartCapture.of(MediaType.parseMediaType("multipart/form-data; boundary=\"XyZ\""), 8, name -> false);
+			capture.append(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(bytes, 0, split)));
+			capture.append(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(bytes, split, bytes.length)));
+			assertEquals("user=alice&note=01234567", capture.getParameter(), "split " + split);
+			assertEquals("[doc=a.pdf(22)]", capture.getFiles(), "split " + split);
+			assertEquals(bytes.length, capture.getSize());
+		}
+	}
+
+	@Test
+	void reportsSizeSoFar() {
+		MultipartCapture capture = new MultipartCapture("b", 16, name -> false);
+		capture.append(DefaultDataBufferFactory.sharedInstance.wrap(
+				"--b\r\nContent-Disposition: form-data; name=\"f\"; filename=\"x.bin\"\r\n\r\n0123456789".getBytes(StandardCharsets.UTF_8)));
+		assertEquals("[f=x.bin(10)]", capture.getFiles());
+	}
+
+	@Test
+	void skipsMalformedDisposition() {
+		MultipartCapture capture = new MultipartCapture("b", 16, name -> false);
+		capture.append(DefaultDataBufferFactory.sharedInstance.wrap(("--b\r\n"
+				+ "Content-Disposition: form-data; name\r\n\r\n"
+				+ "secret\r\n"
+				+ "--b\r\n"
+				+ "Content-Disposition: form-data; name=\"user\"\r\n\r\n"
+				+ "alice\r\n"
+				+ "--b--\r\n").getBytes(StandardCharsets.UTF_8)));
+		assertEquals("user=alice", capture.getParameter());
+		assertNull(capture.getFiles());
+	}
+
+	@Test
+	void masksFieldValues() {
+		MultipartCapture capture = new MultipartCapture("b", 16, "password"::equalsIgnoreCase);
+		capture.append(DefaultDataBufferFactory.sharedInstance.wrap(("--b\r\n"
+				+ "Content-Disposition: form-data; name=\"Password\"\r\n\r\n"
+				+ "a&b=c\r\n"
+				+ "--b\r\n"
+				+ "Content-Disposition: form-data; name=\"user\"\r\n\r\n"
+				+ "alice\r\n"
+				+ "--b--\r\n").getBytes(StandardCharsets.UTF_8)));
+		assertEquals("Password=****&user=alice", capture.getParameter());
+	}
+}
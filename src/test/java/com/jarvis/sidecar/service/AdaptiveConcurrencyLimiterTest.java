@@ -0,0 +1,63 @@
+package com.jarvis.sidecar.service;
+
+import com.jarvis.sidecar.exception.ProxyFailedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(registry, "adaptive", 20, 4, 1000);
+
+	@Test
+	void backsOffOnTranslatedConnectionFailures() {
+		WebClientRequestException refused = new WebClientRequestException(new ConnectException("refused"),
+				HttpMethod.GET, URI.create("http://localhost:9"), new HttpHeaders());
+		StepVerifier.create(limiter.execute(Mono.error(new ProxyFailedException(refused.getMessage(), refused))))
+				.verifyError(ProxyFailedException.class);
+		assertEquals(19, limit());
+		for (int i = 0; i < 100; i++)
+			StepVerifier.create(limiter.execute(Mono.error(new ProxyFailedException(refused.getMessage(), refused))))
+					.verifyError(ProxyFailedException.class);
+		assertEquals(4, limit());
+	}
+
+	@Test
+	void keepsLimitOnOtherErrors() {
+		for (int i = 0; i < 50; i++)
+			StepVerifier.create(limiter.execute(Mono.error(new ProxyFailedException("404 Not Found"))))
+					.verifyError(ProxyFailedException.class);
+		assertEquals(20, limit());
+	}
+
+	@Test
+	void growsLimitAsFullWindowsComplete() {
+		for (int batch = 0; batch < 10; batch++) {
+			List<Sinks.One<String>> calls = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				Sinks.One<String> call = Sinks.one();
+				limiter.execute(call.asMono()).subscribe();
+				calls.add(call);
+			}
+			calls.forEach(call -> call.tryEmitValue("ok"));
+		}
+		assertTrue(limit() > 20);
+	}
+
+	private double limit() {
+		return registry.get("sidecar.concurrency.limit").gauge().value();
+	}
+}
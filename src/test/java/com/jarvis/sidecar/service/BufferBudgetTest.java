@@ -0,0 +1,52 @@
+package com.jarvis.sidecar.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferBudgetTest {
+
+	@Test
+	void rejectsOnceSpent() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		BufferBudget budget = new BufferBudget(registry, 100, 40);
+		assertTrue(budget.tryAcquire(40));
+		assertTrue(budget.tryAcquire(40));
+		assertFalse(budget.tryAcquire(40));
+		assertEquals(80, registry.get("sidecar.buffer.budget.used").gauge().value());
+		budget.release(40);
+		assertTrue(budget.tryAcquire(40));
+		assertEquals(1, registry.get("sidecar.buffer.budget.rejected").counter().count());
+	}
+
+	@Test
+	void neverOvercommitsUnderContention() throws InterruptedException {
+		BufferBudget budget = new BufferBudget(new SimpleMeterRegistry(), 1000, 10);
+		AtomicInteger held = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		CountDownLatch done = new CountDownLatch(8);
+		for (int t = 0; t < 8; t++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 20000; i++) {
+					if (!budget.tryAcquire(10)) continue;
+					peak.accumulateAndGet(held.addAndGet(10), Math::max);
+					held.addAndGet(-10);
+					budget.release(10);
+				}
+				done.countDown();
+			});
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertTrue(peak.get() <= 1000, "peak " + peak.get());
+		assertTrue(budget.tryAcquire(1000));
+	}
+}
@@ -0,0 +1,62 @@
+package com.jarvis.sidecar.service;
+
+import com.jarvis.sidecar.model.ResiliencePolicy;
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.model.SecurityEntity;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ResilienceServiceTest {
+
+	private final RateLimiterRegistry rateLimiters = RateLimiterRegistry.ofDefaults();
+	private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+	private final ResilienceService service = new ResilienceService(rateLimiters, circuitBreakers,
+			BulkheadRegistry.ofDefaults(), 100, 600000, 0);
+
+	@Test
+	void rebuildsInstancesWhenReloadedPolicyChanges() {
+		assertEquals("ok", call(route(1)));
+		assertEquals("limited", call(route(1)));
+		// a reload with an equal policy keeps the exhausted limiter
+		assertEquals("limited", call(route(1)));
+		assertEquals("ok", call(route(100)));
+		assertEquals(100, rateLimiters.rateLimiter("sidecar:/orders/**").getRateLimiterConfig().getLimitForPeriod());
+	}
+
+	@Test
+	void protectsBackgroundCallsWithCircuitBreaker() {
+		RouteMatch route = route(100);
+		assertEquals("ok", call(route));
+		circuitBreakers.circuitBreaker("sidecar:/orders/**").transitionToOpenState();
+		AtomicBoolean called = new AtomicBoolean();
+		StepVerifier.create(service.protect(Optional.of(route), () -> Mono.fromRunnable(() -> called.set(true))))
+				.verifyError(CallNotPermittedException.class);
+		assertFalse(called.get());
+	}
+
+	private String call(RouteMatch route) {
+		return service.execute(Optional.of(route), () -> Mono.just("ok"),
+				ex -> Mono.just("limited"), ex -> Mono.just("unavailable")).block();
+	}
+
+	private static RouteMatch route(int limitForPeriod) {
+		ResiliencePolicy policy = new ResiliencePolicy();
+		policy.setLimitForPeriod(limitForPeriod);
+		policy.setLimitRefreshPeriod(60000L);
+		policy.setTimeoutDuration(0L);
+		SecurityEntity entity = new SecurityEntity();
+		entity.setResilience(policy);
+		return new RouteMatch(entity, "/orders/**");
+	}
+}
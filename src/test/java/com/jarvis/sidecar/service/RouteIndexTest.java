@@ -0,0 +1,113 @@
+package com.jarvis.sidecar.service;
+
+import com.jarvis.sidecar.model.RouteMatch;
+import com.jarvis.sidecar.model.SecurityEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.PathMatcher;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RouteIndexTest {
+
+	private static final PathMatcher MATCHER = new AntPathMatcher();
+	private static final String[] PATTERN_SEGMENTS = {"api", "v1", "users", "*", "**", "**", "us*", "*.json", "{id}", "v?"};
+	private static final String[] PATH_SEGMENTS = {"api", "v1", "v2", "users", "user", "a.json", "42", ""};
+	private static final String[] METHODS = {"GET", "POST", "put", "DELETE"};
+
+	@Test
+	void matchesAntPathMatcher() {
+		Random random = new Random(20240501L);
+		for (int round = 0; round < 200; round++) {
+			List<SecurityEntity> entities = new ArrayList<>();
+			for (int i = random.nextInt(30) + 1; i > 0; i--)
+				entities.add(entity(random));
+			RouteIndex index = new RouteIndex(entities);
+			for (int i = 0; i < 300; i++) {
+				String path = path(random);
+				String method = random.nextInt(6) == 0 ? "PATCH" : METHODS[random.nextInt(METHODS.length)].toUpperCase();
+				assertEquals(describe(linear(entities, path, null)), describe(index.find(path)), path);
+				assertEquals(describe(linear(entities, path, method)), describe(index.find(path, method)), method + " " + path);
+			}
+		}
+	}
+
+	@Test
+	void keepsOrderPrecedence() {
+		SecurityEntity first = new SecurityEntity();
+		first.setEndpoints(Set.of("/api/**"));
+		SecurityEntity second = new SecurityEntity();
+		second.setEndpoints(Set.of("/api/users"));
+		RouteIndex index = new RouteIndex(List.of(first, second));
+		assertEquals(first, index.find("/api/users").map(RouteMatch::getEntity).orElse(null));
+	}
+
+	@Test
+	void matchesRolesBeyondDictionary() {
+		List<SecurityEntity> entities = new ArrayList<>();
+		for (int i = 0; i < 70; i++) {
+			SecurityEntity entity = new SecurityEntity();
+			entity.setEndpoints(Set.of("/r" + i));
+			entity.setRoles(Set.of("ROLE_" + i, "ROLE_SHARED"));
+			entities.add(entity);
+		}
+		RouteIndex index = new RouteIndex(entities);
+		RoleDictionary roles = index.getRoles();
+		for (int i = 0; i < 70; i++) {
+			RouteMatch route = index.find("/r" + i).orElseThrow();
+			assertEquals(true, roles.hasAnyRole(route, List.of(new SimpleGrantedAuthority("ROLE_" + i))), "/r" + i);
+			assertEquals(true, roles.hasAnyRole(route, List.of(new SimpleGrantedAuthority("ROLE_SHARED"))), "/r" + i);
+			assertEquals(false, roles.hasAnyRole(route, List.of(new SimpleGrantedAuthority("ROLE_" + (i + 1)))), "/r" + i);
+			assertEquals(false, roles.hasAnyRole(route, List.of()), "/r" + i);
+		}
+	}
+
+	private static Optional<RouteMatch> linear(List<SecurityEntity> entities, String path, String method) {
+		for (SecurityEntity entity : entities) {
+			if (method != null && !CollectionUtils.isEmpty(entity.getMethods())
+					&& entity.getMethods().stream().noneMatch(v -> v.equalsIgnoreCase(method)))
+				continue;
+			for (String endpoint : entity.getEndpoints()) {
+				if (MATCHER.match(endpoint, path))
+					return Optional.of(new RouteMatch(entity, endpoint));
+			}
+		}
+		return Optional.empty();
+	}
+
+	private static String describe(Optional<RouteMatch> route) {
+		return route.map(v -> v.getEntity().getId() + " " + v.getPattern()).orElse("none");
+	}
+
+	private static SecurityEntity entity(Random random) {
+		SecurityEntity entity = new SecurityEntity();
+		Set<String> endpoints = new LinkedHashSet<>();
+		for (int i = random.nextInt(3) + 1; i > 0; i--) {
+			StringBuilder pattern = new StringBuilder(random.nextInt(10) == 0 ? "" : "/");
+			for (int j = random.nextInt(4); j >= 0; j--) {
+				pattern.append(PATTERN_SEGMENTS[random.nextInt(PATTERN_SEGMENTS.length)]);
+				if (j > 0 || random.nextInt(5) == 0) pattern.append('/');
+			}
+			endpoints.add(pattern.toString());
+		}
+		entity.setEndpoints(endpoints);
+		Set<String> methods = new HashSet<>();
+		for (int i = random.nextInt(3); i > 0; i--)
+			methods.add(METHODS[random.nextInt(METHODS.length)]);
+		entity.setMethods(methods);
+		return entity;
+	}
+
+	private static String path(Random random) {
+		StringBuilder path = new StringBuilder(random.nextInt(20) == 0 ? "" : "/");
+		for (int j = random.nextInt(5); j > 0; j--) {
+			path.append(PATH_SEGMENTS[random.nextInt(PATH_SEGMENTS.length)]);
+			if (j > 1 || random.nextInt(4) == 0) path.append('/');
+		}
+		return path.toString();
+	}
+}
@@ -0,0 +1,47 @@
+package com.jarvis.sidecar.util;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonLogRewriterTest {
+
+	private final JsonLogRewriter rewriter = new JsonLogRewriter(List.of("password", "PIN", "$.card.number", "order.items.pan"), 8, 2);
+
+	@Test
+	void minifiesLikeReparse() throws IOException {
+		String body = "{ \"a\" : [ 1, 2.5, true, null ],\n \"b\": { \"c\": \"d\\\"e\" } }";
+		String compact = new JsonLogRewriter(List.of(), 1024, 100).rewrite(body);
+		assertTrue(new JSONObject(body).similar(new JSONObject(compact)));
+		assertEquals(body.replaceAll("\\s", "").length(), compact.length());
+		assertEquals("{\"a\":[1,2.5,\"...2\"],\"b\":{\"c\":\"d\\\"e\"}}", rewriter.rewrite(body));
+	}
+
+	@Test
+	void masksFieldsAndPaths() throws IOException {
+		assertEquals("{\"user\":{\"password\":\"****\",\"pin\":\"****\"},\"number\":1}",
+				rewriter.rewrite("{\"user\":{\"password\":\"secret\",\"pin\":{\"value\":1234}},\"number\":1}"));
+		assertEquals("{\"card\":{\"number\":\"****\",\"name\":\"x\"},\"other\":{\"number\":2}}",
+				rewriter.rewrite("{\"card\":{\"number\":\"4111\",\"name\":\"x\"},\"other\":{\"number\":2}}"));
+		assertEquals("{\"order\":{\"items\":[{\"pan\":\"****\"},{\"pan\":\"****\",\"id\":[1]}]}}",
+				rewriter.rewrite("{\"order\":{\"items\":[{\"pan\":\"4111\"},{\"pan\":\"4222\",\"id\":[1]}]}}"));
+	}
+
+	@Test
+	void truncatesStringsArraysAndPartialBodies() throws IOException {
+		assertEquals("[\"abcdefgh...\",[1,2,\"...1\"],\"...2\"]", rewriter.rewrite("[\"abcdefghij\", [1, 2, 3], {\"x\": 1}, 4]"));
+		assertEquals("{\"password\":\"****\",\"a\"...", rewriter.rewrite("{\"password\":\"1234\",\"a\":\"unterminat"));
+	}
+
+	@Test
+	void masksFormParameters() {
+		assertEquals("user=alice&password=****&Pin=****&pass%77ord=****&note=&flag&",
+				rewriter.maskParameters("user=alice&password=s%26cret&Pin=1234&pass%77ord=x&note=&flag&"));
+		assertEquals("", rewriter.maskParameters(""));
+	}
+}